@@ -0,0 +1,99 @@
+package net.nowtryz.datastorage.benchmark;
+
+import net.nowtryz.datastorage.entity.DataCatalog;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import net.nowtryz.datastorage.graph.AbstractDataGraph;
+import net.nowtryz.datastorage.graph.DistanceMatrix;
+import net.nowtryz.datastorage.graph.OptimizedDataGraph;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Placement with landmark distances compared to placement with exact distances. Along with the time, the auxiliary
+ * counters report the quality of the placement, the total score computed with exact distances, so both sides of the
+ * trade-off show in the same result table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ApproximationBenchmark {
+    @Param({"0", "4", "16"})
+    public int landmarks;
+
+    @Param({"0.1", "Infinity"})
+    public double errorBound;
+
+    @Param({"GRID", "SCALE_FREE"})
+    public TopologyGenerator.Shape shape;
+
+    @Param({"200"})
+    public int nodes;
+
+    @Param({"2000"})
+    public int users;
+
+    @Param({"1000"})
+    public int data;
+
+    private AbstractDataGraph graph;
+
+    /**
+     * Quality of the last placement, reported once per iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Quality {
+        public double score;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            score = 0;
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void generate() {
+        graph = new TopologyGenerator()
+                .shape(shape)
+                .nodes(nodes)
+                .users(users)
+                .data(data)
+                .generate(OptimizedDataGraph::new);
+        graph.setApproximation(landmarks, errorBound);
+    }
+
+    @Benchmark
+    public AbstractDataGraph placeData(Quality quality) {
+        graph.placeData();
+        quality.score = score(graph);
+        return graph;
+    }
+
+    private static double score(AbstractDataGraph graph) {
+        DataCatalog catalog = graph.getCatalog();
+        DistanceMatrix distances = graph.getDistances();
+        return graph.vertexSet().stream()
+                .filter(SystemNode.class::isInstance)
+                .map(SystemNode.class::cast)
+                .mapToDouble(node -> Arrays.stream(node.getDataIds())
+                        .mapToDouble(id -> score(graph, distances, node, graph.getInterestedUsers(catalog.get(id))))
+                        .sum())
+                .sum();
+    }
+
+    private static double score(AbstractDataGraph graph, DistanceMatrix distances, SystemNode node, User[] users) {
+        int ordinal = graph.ordinalOf(node);
+        double score = 0;
+        for (User user : users) {
+            double d = distances.get(graph.ordinalOf(user), ordinal);
+            score += 1 / (d * d);
+        }
+        return score;
+    }
+}
@@ -0,0 +1,67 @@
+package net.nowtryz.datastorage.benchmark;
+
+import net.nowtryz.datastorage.knapsack.AdaptiveKnapsack;
+import net.nowtryz.datastorage.knapsack.BranchAndBoundKnapsack;
+import net.nowtryz.datastorage.knapsack.DynamicProgrammingKnapsack;
+import net.nowtryz.datastorage.knapsack.KnapsackSolver;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repair of a single overweight node: random items twice as heavy as the capacity of the node
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KnapsackBenchmark {
+    @Param({"dynamic-programming", "branch-and-bound", "adaptive"})
+    public String solver;
+
+    @Param({"20", "100", "1000"})
+    public int items;
+
+    @Param({"10"})
+    public int meanWeight;
+
+    private KnapsackSolver knapsackSolver;
+    private int[] weights;
+    private double[] values;
+    private int capacity;
+
+    @Setup
+    public void generate() {
+        switch (solver) {
+            case "dynamic-programming":
+                knapsackSolver = new DynamicProgrammingKnapsack();
+                break;
+            case "branch-and-bound":
+                knapsackSolver = new BranchAndBoundKnapsack();
+                break;
+            default:
+                knapsackSolver = new AdaptiveKnapsack();
+        }
+
+        Random random = new Random(42);
+        weights = new int[items];
+        values = new double[items];
+        long total = 0;
+        for (int i = 0; i < items; i++) {
+            weights[i] = 1 + random.nextInt(2 * meanWeight - 1);
+            // scores are sums of inverse squared distances
+            values[i] = 1 / Math.pow(1 + random.nextInt(20), 2) * (1 + random.nextInt(10));
+            total += weights[i];
+        }
+        capacity = (int) (total / 2);
+    }
+
+    @Benchmark
+    public BitSet solve() {
+        return knapsackSolver.solve(weights, values, capacity);
+    }
+}
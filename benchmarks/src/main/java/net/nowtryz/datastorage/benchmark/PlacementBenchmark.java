@@ -0,0 +1,72 @@
+package net.nowtryz.datastorage.benchmark;
+
+import net.nowtryz.datastorage.entity.DataCatalog;
+import net.nowtryz.datastorage.graph.AbstractDataGraph;
+import net.nowtryz.datastorage.graph.LagrangianDataGraph;
+import net.nowtryz.datastorage.graph.LazyGreedyDataGraph;
+import net.nowtryz.datastorage.graph.MakeshiftDataGraph;
+import net.nowtryz.datastorage.graph.OptimizedDataGraph;
+import net.nowtryz.datastorage.graph.PartitionedDataGraph;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Full placement of a generated problem, distances included. The graph is generated again before each invocation so
+ * every run starts from empty nodes and an empty distance cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PlacementBenchmark {
+    @Param({"makeshift", "optimized", "lagrangian", "lazy", "partitioned"})
+    public String strategy;
+
+    @Param({"TREE", "GRID", "SCALE_FREE"})
+    public TopologyGenerator.Shape shape;
+
+    @Param({"50"})
+    public int nodes;
+
+    @Param({"500"})
+    public int users;
+
+    @Param({"500"})
+    public int data;
+
+    @Param({"5"})
+    public int interestsPerUser;
+
+    @Param({"UNIFORM"})
+    public TopologyGenerator.SizeDistribution sizes;
+
+    private AbstractDataGraph graph;
+
+    @Setup(Level.Invocation)
+    public void generate() {
+        Function<DataCatalog, AbstractDataGraph> factory;
+        if ("makeshift".equals(strategy)) factory = MakeshiftDataGraph::new;
+        else if ("lagrangian".equals(strategy)) factory = LagrangianDataGraph::new;
+        else if ("lazy".equals(strategy)) factory = LazyGreedyDataGraph::new;
+        else if ("partitioned".equals(strategy)) factory = PartitionedDataGraph::new;
+        else factory = OptimizedDataGraph::new;
+        graph = new TopologyGenerator()
+                .shape(shape)
+                .sizes(sizes)
+                .nodes(nodes)
+                .users(users)
+                .data(data)
+                .interestsPerUser(interestsPerUser)
+                .generate(factory);
+    }
+
+    @Benchmark
+    public AbstractDataGraph placeData() {
+        graph.placeData();
+        return graph;
+    }
+}
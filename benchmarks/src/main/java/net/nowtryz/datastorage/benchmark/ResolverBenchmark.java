@@ -0,0 +1,61 @@
+package net.nowtryz.datastorage.benchmark;
+
+import net.nowtryz.datastorage.entity.User;
+import net.nowtryz.datastorage.graph.OptimizedDataGraph;
+import net.nowtryz.datastorage.graph.ReplicaResolver;
+import net.nowtryz.datastorage.graph.ReplicationPolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of the nearest copy of a data from all available cores, on a graph placed once with replicated data
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(Threads.MAX)
+@Fork(1)
+public class ResolverBenchmark {
+    @Param({"1", "3"})
+    public int replicas;
+
+    @Param({"200"})
+    public int nodes;
+
+    @Param({"5000"})
+    public int users;
+
+    @Param({"2000"})
+    public int data;
+
+    private ReplicaResolver resolver;
+    private User[] readers;
+
+    @Setup
+    public void generate() {
+        OptimizedDataGraph graph = new TopologyGenerator()
+                .shape(TopologyGenerator.Shape.SCALE_FREE)
+                .nodes(nodes)
+                .users(users)
+                .data(data)
+                .generate(OptimizedDataGraph::new);
+        graph.setReplicationPolicy(ReplicationPolicy.fixed(replicas));
+        graph.placeData();
+        resolver = graph.getResolver();
+        readers = graph.getUsers();
+        // warm the distance rows so only lookups are measured
+        for (User user : readers) resolver.resolve(user, 0);
+    }
+
+    @Benchmark
+    public Object resolve() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        User user = readers[random.nextInt(readers.length)];
+        int[] interests = user.getInterests();
+        return resolver.resolve(user, interests[random.nextInt(interests.length)]);
+    }
+}
@@ -0,0 +1,76 @@
+package net.nowtryz.datastorage.benchmark;
+
+import net.nowtryz.datastorage.entity.Data;
+import net.nowtryz.datastorage.entity.DataCatalog;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.graph.DistanceMatrix;
+import net.nowtryz.datastorage.graph.OptimizedDataGraph;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Score of every data on every node with warm distances, one node at a time or all nodes at once
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark {
+    @Param({"TREE", "SCALE_FREE"})
+    public TopologyGenerator.Shape shape;
+
+    @Param({"50"})
+    public int nodes;
+
+    @Param({"1000"})
+    public int users;
+
+    @Param({"200"})
+    public int data;
+
+    private OptimizedDataGraph graph;
+    private Data[] items;
+    private SystemNode[] systemNodes;
+
+    @Setup
+    public void generate() {
+        graph = new TopologyGenerator().shape(shape).nodes(nodes).users(users).data(data)
+                .generate(OptimizedDataGraph::new);
+        final DataCatalog catalog = graph.getCatalog();
+        items = IntStream.range(0, catalog.size()).mapToObj(catalog::get).filter(Objects::nonNull).toArray(Data[]::new);
+        systemNodes = graph.vertexSet().stream().filter(SystemNode.class::isInstance).toArray(SystemNode[]::new);
+        final DistanceMatrix distances = graph.getDistances();
+        for (int u = 0; u < distances.userCount(); u++) distances.row(u);
+    }
+
+    @Benchmark
+    public double computeScores() {
+        double total = 0;
+        for (Data item : items) {
+            for (SystemNode node : systemNodes) total += graph.scoreOf(item, node);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double batchScores() {
+        double total = 0;
+        for (Data item : items) {
+            for (double score : graph.scoresOf(item)) total += score;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public DistanceMatrix coldDistances() {
+        graph.invalidateDistances();
+        DistanceMatrix matrix = graph.getDistances();
+        for (int u = 0; u < matrix.userCount(); u++) matrix.row(u);
+        return matrix;
+    }
+}
@@ -0,0 +1,54 @@
+package net.nowtryz.datastorage.benchmark;
+
+import net.nowtryz.datastorage.entity.SystemNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Capacity checks and content reads of a filled node, the innermost operations of both placement strategies
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SystemNodeBenchmark {
+    @Param({"10", "1000"})
+    public int stored;
+
+    private SystemNode node;
+
+    @Setup
+    public void fill() {
+        node = new SystemNode(Integer.MAX_VALUE);
+        for (int i = 0; i < stored; i++) node.addToStorage(i, 1 + i % 20);
+    }
+
+    @Benchmark
+    public int getUsedSpace() {
+        return node.getUsedSpace();
+    }
+
+    @Benchmark
+    public boolean hasEnoughSpace() {
+        return node.hasEnoughSpace(10);
+    }
+
+    @Benchmark
+    public void forEachData(Blackhole blackhole) {
+        node.forEachData(blackhole::consume);
+    }
+
+    @Benchmark
+    public int[] getDataIds() {
+        return node.getDataIds();
+    }
+
+    @Benchmark
+    public int[] getDataSnapshot() {
+        return node.getData().toArray();
+    }
+}
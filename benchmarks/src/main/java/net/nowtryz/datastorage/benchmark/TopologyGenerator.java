@@ -0,0 +1,182 @@
+package net.nowtryz.datastorage.benchmark;
+
+import net.nowtryz.datastorage.entity.DataCatalog;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import net.nowtryz.datastorage.graph.AbstractDataGraph;
+
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Seeded generator of synthetic placement problems. Two generators with the same parameters and seed produce the same
+ * topology, interests and data sizes.
+ */
+public class TopologyGenerator {
+    /**
+     * Shape of the links between system nodes
+     */
+    public enum Shape {
+        /**
+         * Random tree, each node is linked to a random previous node
+         */
+        TREE,
+        /**
+         * Square grid, each node is linked to its right and bottom neighbours
+         */
+        GRID,
+        /**
+         * Barab&aacute;si-Albert graph, each node is linked to two previous nodes chosen proportionally to their degree
+         */
+        SCALE_FREE
+    }
+
+    /**
+     * Distribution of data sizes
+     */
+    public enum SizeDistribution {
+        UNIFORM, EXPONENTIAL, PARETO
+    }
+
+    private Shape shape = Shape.TREE;
+    private SizeDistribution sizes = SizeDistribution.UNIFORM;
+    private int nodes = 100;
+    private int users = 1000;
+    private int data = 1000;
+    private int interestsPerUser = 5;
+    private int meanDataSize = 10;
+    private double capacitySlack = 1.5;
+    private long seed = 42;
+
+    public TopologyGenerator shape(Shape shape) {
+        this.shape = shape;
+        return this;
+    }
+
+    public TopologyGenerator sizes(SizeDistribution sizes) {
+        this.sizes = sizes;
+        return this;
+    }
+
+    public TopologyGenerator nodes(int nodes) {
+        this.nodes = nodes;
+        return this;
+    }
+
+    public TopologyGenerator users(int users) {
+        this.users = users;
+        return this;
+    }
+
+    public TopologyGenerator data(int data) {
+        this.data = data;
+        return this;
+    }
+
+    public TopologyGenerator interestsPerUser(int interestsPerUser) {
+        this.interestsPerUser = interestsPerUser;
+        return this;
+    }
+
+    public TopologyGenerator meanDataSize(int meanDataSize) {
+        this.meanDataSize = meanDataSize;
+        return this;
+    }
+
+    /**
+     * Set the ratio between the total capacity of nodes and the total size of the data
+     * @param capacitySlack the ratio, must be greater than 1 for the problem to be solvable
+     * @return this generator
+     */
+    public TopologyGenerator capacitySlack(double capacitySlack) {
+        this.capacitySlack = capacitySlack;
+        return this;
+    }
+
+    public TopologyGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Generate a problem, system nodes get ordinals <i>0..nodes-1</i> and users <i>0..users-1</i> in the graph
+     * @param factory the constructor of the graph to fill
+     * @param <G> the type of graph
+     * @return the generated graph, with no data placed
+     */
+    public <G extends AbstractDataGraph> G generate(Function<DataCatalog, G> factory) {
+        final Random random = new Random(seed);
+        final DataCatalog catalog = new DataCatalog(data);
+        long totalSize = 0;
+        for (int i = 0; i < data; i++) {
+            int size = this.nextSize(random);
+            catalog.create(size);
+            totalSize += size;
+        }
+
+        final G graph = factory.apply(catalog);
+        final int capacity = (int) Math.ceil(totalSize * capacitySlack / nodes);
+        final SystemNode[] systemNodes = new SystemNode[nodes];
+        for (int i = 0; i < nodes; i++) graph.addVertex(systemNodes[i] = new SystemNode(capacity));
+        this.link(graph, systemNodes, random);
+
+        for (int i = 0; i < users; i++) {
+            User user = new User(random.ints(0, data).distinct().limit(Math.min(interestsPerUser, data)).toArray());
+            graph.addVertex(user);
+            graph.addEdge(user, systemNodes[random.nextInt(nodes)], 1 + random.nextInt(5));
+        }
+        return graph;
+    }
+
+    private int nextSize(Random random) {
+        switch (sizes) {
+            case EXPONENTIAL:
+                return 1 + (int) (-Math.log(1 - random.nextDouble()) * (meanDataSize - 1));
+            case PARETO:
+                // shape 2, so the mean is twice the scale
+                return (int) Math.ceil(meanDataSize / 2.0 / Math.sqrt(1 - random.nextDouble()));
+            default:
+                return 1 + random.nextInt(2 * meanDataSize - 1);
+        }
+    }
+
+    private void link(AbstractDataGraph graph, SystemNode[] systemNodes, Random random) {
+        switch (shape) {
+            case GRID:
+                int side = (int) Math.ceil(Math.sqrt(systemNodes.length));
+                for (int i = 0; i < systemNodes.length; i++) {
+                    if ((i + 1) % side != 0 && i + 1 < systemNodes.length) {
+                        graph.addEdge(systemNodes[i], systemNodes[i + 1], this.nextWeight(random));
+                    }
+                    if (i + side < systemNodes.length) {
+                        graph.addEdge(systemNodes[i], systemNodes[i + side], this.nextWeight(random));
+                    }
+                }
+                break;
+            case SCALE_FREE:
+                // every edge end, picking a random entry picks a node proportionally to its degree
+                int[] ends = new int[4 * systemNodes.length];
+                int count = 0;
+                for (int i = 1; i < systemNodes.length; i++) {
+                    // only pick among previous nodes, the new one is not linked yet
+                    int previous = count;
+                    for (int k = 0; k < Math.min(2, i); k++) {
+                        int target = previous == 0 ? 0 : ends[random.nextInt(previous)];
+                        if (graph.addEdge(systemNodes[i], systemNodes[target], this.nextWeight(random)) != null) {
+                            ends[count++] = i;
+                            ends[count++] = target;
+                        }
+                    }
+                }
+                break;
+            default:
+                for (int i = 1; i < systemNodes.length; i++) {
+                    graph.addEdge(systemNodes[i], systemNodes[random.nextInt(i)], this.nextWeight(random));
+                }
+        }
+    }
+
+    private double nextWeight(Random random) {
+        return 1 + random.nextInt(10);
+    }
+}
@@ -1,17 +1,26 @@
 package net.nowtryz.datastorage.entity;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public class Data {
-    private static int current_id = 0;
-    private static Map<Integer, Data> dataList = new HashMap<>();
-    private int id = current_id++;
+    private int id;
     private int size;
 
+    /**
+     * Create a data in the {@link DataCatalog#getDefault() default catalog}
+     * @param size the size of the data
+     * @see DataCatalog#create(int)
+     */
     public Data(int size) {
+        this(DataCatalog.getDefault(), size);
+    }
+
+    Data(DataCatalog catalog, int size) {
+        this.size = size;
+        this.id = catalog.add(this);
+    }
+
+    Data(int id, int size) {
+        this.id = id;
         this.size = size;
-        dataList.put(this.id, this);
     }
 
     public int getId() {
@@ -22,7 +31,12 @@ public class Data {
         return size;
     }
 
+    /**
+     * Get a data of the {@link DataCatalog#getDefault() default catalog}
+     * @param id the id of the data
+     * @return the data or null if it doesn't exist
+     */
     public static Data getFromId(int id) {
-        return dataList.get(id);
+        return DataCatalog.getDefault().get(id);
     }
 }
@@ -0,0 +1,114 @@
+package net.nowtryz.datastorage.entity;
+
+import java.util.Arrays;
+
+/**
+ * Registry of the {@link Data} of a placement problem. Ids are assigned sequentially by the catalog, so data are kept
+ * in a growable array indexed by id, along with their sizes to avoid dereferencing the {@link Data} objects on hot
+ * paths.
+ *
+ * <p>Each catalog is independent, several placement problems can therefore live in the same JVM. Catalogs must not grow
+ * while a placement reads them.
+ */
+public class DataCatalog {
+    private static final DataCatalog DEFAULT = new DataCatalog();
+    private Data[] data;
+    private int[] sizes;
+    private int count = 0;
+
+    /**
+     * Create an empty catalog
+     */
+    public DataCatalog() {
+        this(16);
+    }
+
+    /**
+     * Create an empty catalog
+     * @param expectedSize the number of data the catalog should hold without resizing
+     */
+    public DataCatalog(int expectedSize) {
+        this.data = new Data[Math.max(1, expectedSize)];
+        this.sizes = new int[data.length];
+    }
+
+    /**
+     * Get the catalog used by data created without specifying a catalog
+     * @return the default catalog
+     */
+    public static DataCatalog getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Create a data in this catalog, taking the next available id
+     * @param size the size of the data
+     * @return the new data
+     */
+    public Data create(int size) {
+        return new Data(this, size);
+    }
+
+    /**
+     * Add a data with a known id to this catalog, ids between the highest registered id and the given one are left
+     * empty
+     * @param id the id of the data
+     * @param size the size of the data
+     * @return the new data
+     * @throws IllegalArgumentException if the id is already used
+     */
+    public synchronized Data create(int id, int size) {
+        if (this.get(id) != null) throw new IllegalArgumentException("Data " + id + " already exists");
+        Data created = new Data(id, size);
+        this.register(id, created);
+        return created;
+    }
+
+    /**
+     * Register a data under the next available id
+     * @param created the data being created
+     * @return the id of the data
+     */
+    synchronized int add(Data created) {
+        int id = count;
+        this.register(id, created);
+        return id;
+    }
+
+    private void register(int id, Data created) {
+        if (id >= data.length) {
+            int length = Math.max(id + 1, data.length * 2);
+            data = Arrays.copyOf(data, length);
+            sizes = Arrays.copyOf(sizes, length);
+        }
+        data[id] = created;
+        sizes[id] = created.getSize();
+        count = Math.max(count, id + 1);
+    }
+
+    /**
+     * Get a data from its id
+     * @param id the id of the data
+     * @return the data or null if there is no data with this id
+     */
+    public Data get(int id) {
+        return id >= 0 && id < count ? data[id] : null;
+    }
+
+    /**
+     * Get the size of a data without dereferencing it
+     * @param id the id of the data
+     * @return the size of the data, 0 if there is no data with this id
+     */
+    public int sizeOf(int id) {
+        return id >= 0 && id < count ? sizes[id] : 0;
+    }
+
+    /**
+     * Get the upper bound (exclusive) of the ids of this catalog
+     * @return the highest registered id plus one
+     */
+    public int size() {
+        return count;
+    }
+}
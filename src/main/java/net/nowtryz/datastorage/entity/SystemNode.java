@@ -1,19 +1,27 @@
 package net.nowtryz.datastorage.entity;
 
-import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Objects;
+import net.nowtryz.datastorage.util.IntIntHashMap;
+import net.nowtryz.datastorage.util.IntSet;
+
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 
 /**
  * A SystemNode can hold one or many data depending on it size. The node has it storage capacity that can differ from
  * one node to another. A System node can communicate with other system nodes and some users.
+ *
+ * <p>The storage of a node is guarded by the node itself, so distinct nodes can be filled concurrently. The used space
+ * is maintained on each change of the storage so capacity checks are constant-time and never block.
  */
 public class SystemNode extends Node {
     private static int current_id = 0;
     private int capacity;
-    private List<Integer> storage = new LinkedList<>();
+    /**
+     * Data ids held by this node, mapped to their size
+     */
+    private final IntIntHashMap storage = new IntIntHashMap();
+    private volatile int usedSpace = 0;
+    private int modifications = 0;
 
     /**
      * Create a SystemNode instance
@@ -24,30 +32,82 @@ public class SystemNode extends Node {
         this.capacity = capacity;
     }
 
+    private SystemNode(int id, int capacity) {
+        super(id);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Recreate a SystemNode with a known id, e.g. when loading a saved graph. Nodes created afterward get higher ids.
+     * @param id the id of the node
+     * @param capacity the capacity of the node
+     * @return the node
+     */
+    public static SystemNode withId(int id, int capacity) {
+        synchronized (SystemNode.class) {
+            current_id = Math.max(current_id, id + 1);
+        }
+        return new SystemNode(id, capacity);
+    }
+
     /**
      * Create a SystemNode instance
      * @param capacity the capacity of this node
+     * @param catalog the catalog the data belong to
      * @param dataIds the ids of data holden by this node
+     * @throws IllegalArgumentException if a data is not in the catalog
      */
-    public SystemNode(int capacity, int[] dataIds) {
+    public SystemNode(int capacity, DataCatalog catalog, int[] dataIds) {
         this(capacity);
-        Arrays.stream(dataIds).forEach(this::addToStorage);
+        for (int id : dataIds) {
+            Data data = catalog.get(id);
+            if (data == null) throw new IllegalArgumentException("Data " + id + " is not in the catalog");
+            this.addToStorage(data);
+        }
+    }
+
+    /**
+     * Add the given data to the holden data of this node
+     * @param data the data to add
+     */
+    public void addToStorage(Data data) {
+        this.addToStorage(data.getId(), data.getSize());
     }
 
     /**
      * Add the data specified by the given id to the holden data of this node
      * @param id the id of the data
+     * @param size the size of the data
+     */
+    public synchronized void addToStorage(int id, int size) {
+        if (storage.put(id, size, -1) == -1) {
+            usedSpace += size;
+            modifications++;
+        }
+    }
+
+    /**
+     * Add the given data to the holden data of this node if it has enough free space for it. The check and the addition
+     * are atomic, so concurrent additions never fill the node beyond its capacity.
+     * @param data the data to add
+     * @return true if the data has been added, false if there isn't enough space or the node already holds it
      */
-    public void addToStorage(int id) {
-        storage.add(id);
+    public synchronized boolean tryAddToStorage(Data data) {
+        if (storage.containsKey(data.getId()) || !this.hasEnoughSpace(data.getSize())) return false;
+        this.addToStorage(data.getId(), data.getSize());
+        return true;
     }
 
     /**
      * Remove the data specified by the given id to the holden data of this node
      * @param id the id of the data
      */
-    public void removeFromStorage(Integer id) {
-        storage.remove(id);
+    public synchronized void removeFromStorage(int id) {
+        int size = storage.remove(id, -1);
+        if (size != -1) {
+            usedSpace -= size;
+            modifications++;
+        }
     }
 
     /**
@@ -55,7 +115,7 @@ public class SystemNode extends Node {
      * @return the used space of this node
      */
     public int getUsedSpace() {
-        return this.storage.stream().map(Data::getFromId).filter(Objects::nonNull).mapToInt(Data::getSize).sum();
+        return usedSpace;
     }
 
     /**
@@ -83,24 +143,75 @@ public class SystemNode extends Node {
         return  this.getUsedSpace() > capacity;
     }
 
-    public List<Integer> getData() {
-        return new LinkedList<>(storage);
+    /**
+     * Get the ids of the data holden by this node. The returned set is a snapshot of the storage, it does not reflect
+     * later changes and can be read while the node is being filled. Copying the storage costs as much as the node
+     * holds, prefer {@link #forEachData(IntConsumer)} or {@link #getDataIds()} to only read the ids.
+     * @return the ids of stored data
+     */
+    public synchronized IntSet getData() {
+        return new IntIntHashMap(storage).keys();
+    }
+
+    /**
+     * Get the ids of the data holden by this node, in no particular order
+     * @return a new array of the ids of stored data
+     */
+    public synchronized int[] getDataIds() {
+        return storage.keys().toArray();
+    }
+
+    /**
+     * Perform an action for the id of each data holden by this node, without copying the storage. The node is locked
+     * during the iteration, so the action must not change its storage or wait for another thread that could.
+     * @param action the action to perform on each id
+     */
+    public synchronized void forEachData(IntConsumer action) {
+        storage.keys().forEach(action);
+    }
+
+    /**
+     * Get the size this node accounted for a data it holds
+     * @param id the id of the data
+     * @return the size of the data, -1 if it is not stored on this node
+     */
+    public synchronized int getDataSize(int id) {
+        return storage.get(id, -1);
+    }
+
+    /**
+     * Check whether this node holds the data specified by the given id
+     * @param id the id of the data
+     * @return true if the data is stored on this node
+     */
+    public synchronized boolean contains(int id) {
+        return storage.containsKey(id);
     }
 
     public int getCapacity() {
         return capacity;
     }
 
-    public void clear() {
+    public synchronized void clear() {
         storage.clear();
+        usedSpace = 0;
+        modifications++;
+    }
+
+    /**
+     * Get the number of changes made to the storage of this node, to tell whether it changed since it was last read
+     * @return the number of additions and removals of data, including clears
+     */
+    public synchronized int getModificationCount() {
+        return modifications;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public String toString() {
-        String ids = this.storage.stream().map(Object::toString).collect(Collectors.joining(", "));
+    public synchronized String toString() {
+        String ids = this.storage.keys().stream().mapToObj(Integer::toString).collect(Collectors.joining(", "));
         return "SystemNode(" + id + ", " + getUsedSpace() + '/' + capacity + ", data(" + ids + "))";
     }
 }
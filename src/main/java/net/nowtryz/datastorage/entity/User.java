@@ -20,6 +20,24 @@ public class User extends Node {
         this.interests = interests;
     }
 
+    private User(int id, int[] interests) {
+        super(id);
+        this.interests = interests;
+    }
+
+    /**
+     * Recreate a user with a known id, e.g. when loading a saved graph. Users created afterward get higher ids.
+     * @param id the id of the user
+     * @param interests the interests of the user
+     * @return the user
+     */
+    public static User withId(int id, int... interests) {
+        synchronized (User.class) {
+            current_id = Math.max(current_id, id + 1);
+        }
+        return new User(id, interests);
+    }
+
     /**
      * Get interests of the user
      * @return interests of the user
@@ -28,6 +46,16 @@ public class User extends Node {
         return interests;
     }
 
+    /**
+     * Set interests of the user. If the user is part of a graph, use
+     * {@link net.nowtryz.datastorage.graph.AbstractDataGraph#onInterestChanged(User, int...)} instead so the graph can
+     * update its placement.
+     * @param interests the new interests of the user
+     */
+    public void setInterests(int... interests) {
+        this.interests = interests;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1,24 +1,75 @@
 package net.nowtryz.datastorage.graph;
 
 import net.nowtryz.datastorage.entity.Data;
+import net.nowtryz.datastorage.entity.DataCatalog;
 import net.nowtryz.datastorage.entity.Node;
 import net.nowtryz.datastorage.entity.SystemNode;
 import net.nowtryz.datastorage.entity.User;
-import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
+import net.nowtryz.datastorage.metrics.AccessStatistics;
+import net.nowtryz.datastorage.metrics.PlacementListener;
+import net.nowtryz.datastorage.util.ArraysUtils;
+import net.nowtryz.datastorage.util.IndexedMinHeap;
 import org.jgrapht.graph.DefaultWeightedEdge;
 import org.jgrapht.traverse.ClosestFirstIterator;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static net.nowtryz.datastorage.util.ArraysUtils.arrayContains;
+
 /**
  * Specific graph to hold system nodes and users
  */
 public abstract class AbstractDataGraph extends SimpleWeightedGraph<Node> {
+    // distances of a user to candidate nodes while scoring them in a batch, one buffer per thread
+    private static final ThreadLocal<double[]> ROWS = new ThreadLocal<>();
+
+    protected final DataCatalog catalog;
+    private final Ordinals<User> userOrdinals = new Ordinals<>();
+    private final Ordinals<SystemNode> nodeOrdinals = new Ordinals<>();
+    private final InterestIndex interests = new InterestIndex();
+    private DistanceMatrix distances;
+    private CompactGraph compact;
+    private LandmarkOracle oracle;
+    private volatile UserGroups groups;
+    private boolean aggregateUsers = false;
+    private volatile AccessStatistics statistics;
+    private int landmarks = 0;
+    private double errorBound = 0;
+    private PlacementListener listener = PlacementListener.NONE;
+    private final ReplicaResolver resolver = new ReplicaResolver();
+    private volatile Placement placement = Placement.empty();
+
+    /**
+     * Create a graph placing data of the {@link DataCatalog#getDefault() default catalog}
+     */
+    protected AbstractDataGraph() {
+        this(DataCatalog.getDefault());
+    }
+
+    /**
+     * Create a graph placing data of the given catalog
+     * @param catalog the catalog holding the data users are interested in
+     */
+    protected AbstractDataGraph(DataCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Get the catalog of the data placed on this graph
+     * @return the data catalog
+     */
+    public DataCatalog getCatalog() {
+        return catalog;
+    }
+
     /**
      * Iterates on the given iterator until it encounter a SystemNode
      * @param iterator the iterator to iterate
@@ -32,6 +83,372 @@ public abstract class AbstractDataGraph extends SimpleWeightedGraph<Node> {
         }
         return null;
     }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addVertex(Node node) {
+        boolean added = this.insertVertex(node);
+        if (added) this.invalidateDistances();
+        return added;
+    }
+
+    private boolean insertVertex(Node node) {
+        boolean added = super.addVertex(node);
+        if (added) {
+            if (node instanceof User) {
+                User user = (User) node;
+                interests.add(userOrdinals.add(user), user.getInterests());
+            } else if (node instanceof SystemNode) nodeOrdinals.add((SystemNode) node);
+        }
+        return added;
+    }
+
+    /**
+     * Add many vertices and links at once, e.g. when loading a graph. Links are checked before anything is added, and
+     * cached distances are dropped once instead of after every insertion.
+     * @param vertices the users and system nodes to add
+     * @param sources the source of each link
+     * @param targets the target of each link, indexed like the sources
+     * @param weights the weight of each link, indexed like the sources
+     * @throws IllegalArgumentException if a link connects two users or its weight is negative or not finite
+     */
+    public void addAll(Node[] vertices, Node[] sources, Node[] targets, double[] weights) {
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] instanceof User && targets[i] instanceof User) {
+                throw new IllegalArgumentException("You cannot connect a User to another User");
+            }
+            if (!Double.isFinite(weights[i]) || weights[i] < 0) {
+                throw new IllegalArgumentException("Invalid link weight " + weights[i]);
+            }
+        }
+
+        try {
+            for (Node vertex : vertices) this.insertVertex(vertex);
+            for (int i = 0; i < sources.length; i++) {
+                DefaultWeightedEdge edge = super.addEdge(sources[i], targets[i]);
+                if (edge != null) super.setEdgeWeight(edge, weights[i]);
+            }
+        } finally {
+            this.invalidateDistances();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeVertex(Node node) {
+        boolean removed = super.removeVertex(node);
+        if (removed) {
+            if (node instanceof User) {
+                User user = (User) node;
+                interests.remove(userOrdinals.remove(user), user.getInterests());
+            } else if (node instanceof SystemNode) nodeOrdinals.remove((SystemNode) node);
+            this.invalidateDistances();
+        }
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DefaultWeightedEdge addEdge(Node sourceVertex, Node targetVertex) {
+        DefaultWeightedEdge edge = super.addEdge(sourceVertex, targetVertex);
+        if (edge != null) this.invalidateDistances();
+        return edge;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addEdge(Node sourceVertex, Node targetVertex, DefaultWeightedEdge edge) {
+        boolean added = super.addEdge(sourceVertex, targetVertex, edge);
+        if (added) this.invalidateDistances();
+        return added;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DefaultWeightedEdge removeEdge(Node sourceVertex, Node targetVertex) {
+        DefaultWeightedEdge edge = super.removeEdge(sourceVertex, targetVertex);
+        if (edge != null) this.invalidateDistances();
+        return edge;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeEdge(DefaultWeightedEdge edge) {
+        boolean removed = super.removeEdge(edge);
+        if (removed) this.invalidateDistances();
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setEdgeWeight(DefaultWeightedEdge edge, double weight) {
+        super.setEdgeWeight(edge, weight);
+        this.invalidateDistances();
+    }
+
+    /**
+     * Drop cached distances, they will be computed again on the next request
+     */
+    public void invalidateDistances() {
+        this.distances = null;
+        this.oracle = null;
+        this.compact = null;
+        this.groups = null;
+    }
+
+    /**
+     * Get an immutable compressed sparse row copy of the graph, on which shortest paths are computed. The copy is
+     * cached until the graph changes.
+     * @return the compact graph
+     */
+    public CompactGraph freeze() {
+        CompactGraph graph = this.compact;
+        if (graph == null) {
+            this.compact = graph = CompactGraph.of(this, userOrdinals.capacity(), nodeOrdinals.capacity());
+        }
+        return graph;
+    }
+
+    /**
+     * Get the distances from all users to all system nodes of the graph. The matrix is cached until the graph changes.
+     * @return the distance matrix of the graph
+     */
+    public DistanceMatrix getDistances() {
+        DistanceMatrix matrix = this.distances;
+        if (matrix == null) {
+            User[] users = new User[userOrdinals.capacity()];
+            SystemNode[] nodes = new SystemNode[nodeOrdinals.capacity()];
+            for (int i = 0; i < users.length; i++) users[i] = userOrdinals.get(i);
+            for (int i = 0; i < nodes.length; i++) nodes[i] = nodeOrdinals.get(i);
+            this.distances = matrix = new DistanceMatrix(this.freeze(), users, nodes, listener, this.getUserGroups());
+        }
+        return matrix;
+    }
+
+    /**
+     * Set the listener notified of what happens during placements, such as {@link
+     * net.nowtryz.datastorage.metrics.PlacementMetrics PlacementMetrics}
+     * @param listener the listener, or null to stop listening
+     */
+    public void setListener(PlacementListener listener) {
+        this.listener = listener == null ? PlacementListener.NONE : listener;
+        // the distance matrix reports to the listener it was created with
+        this.distances = null;
+        this.oracle = null;
+    }
+
+    /**
+     * Get the listener notified of what happens during placements
+     * @return the listener, {@link PlacementListener#NONE} if none is set
+     */
+    public PlacementListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Get the read path of the graph, to find the node a user should read a data from. The resolver follows the graph:
+     * it routes on the placement as it was at the end of the last placement or incremental update.
+     * @return the resolver of the graph
+     */
+    public ReplicaResolver getResolver() {
+        return resolver;
+    }
+
+    /**
+     * Get the placement published at the end of the last placement or incremental update. The returned placement never
+     * changes and can be read from any thread without locking. System nodes are not isolated: placements modify them
+     * in place, so reading a node directly may show a placement in progress.
+     * @return the last placement, empty if no placement ran yet
+     */
+    public Placement getPlacement() {
+        return placement;
+    }
+
+    /**
+     * Let readers of the graph see the result of a placement
+     */
+    private void publish() {
+        this.publish(placement.next(this, placement.getVersion() + 1));
+    }
+
+    /**
+     * Publish the data currently held by the system nodes as the placement of the graph, for nodes whose storage was
+     * restored outside of a placement, e.g. from a snapshot. Must be called by the thread modifying the graph.
+     * @return the published placement
+     */
+    public Placement publishRestored() {
+        this.publish();
+        return placement;
+    }
+
+    private void publish(Placement published) {
+        this.placement = published;
+        resolver.refresh(this, published);
+    }
+
+    /**
+     * Score placements with approximate distances obtained from landmarks instead of computing the exact distances from
+     * every interested user. Knapsack repair of overweight nodes keeps using exact distances.
+     * @param landmarks the number of landmarks, 0 to score with exact distances
+     * @param errorBound the max relative error of a distance, beyond it the exact distance is computed
+     * @see LandmarkOracle
+     */
+    public void setApproximation(int landmarks, double errorBound) {
+        if (landmarks < 0 || errorBound < 0) throw new IllegalArgumentException("Approximation must be positive");
+        this.landmarks = landmarks;
+        this.errorBound = errorBound;
+        this.oracle = null;
+    }
+
+    /**
+     * Get the distances used to score placements: the exact {@link #getDistances() distance matrix}, or landmark
+     * estimates if an {@link #setApproximation(int, double) approximation} is set. Cached until the graph changes.
+     * @return the distance oracle of the graph
+     */
+    public DistanceOracle getDistanceOracle() {
+        if (landmarks == 0) return this.getDistances();
+        LandmarkOracle estimates = this.oracle;
+        if (estimates == null) {
+            this.oracle = estimates = new LandmarkOracle(this.freeze(), landmarks, errorBound, this.getDistances());
+        }
+        return estimates;
+    }
+
+    /**
+     * Aggregate users connected to the same system nodes with the same weights: they share a single row of distances
+     * and each group is scored once, weighted by its number of users interested in the data. Scores are unchanged.
+     * @param enabled true to aggregate users, false to handle each user on its own
+     * @see UserGroups
+     */
+    public void setUserAggregation(boolean enabled) {
+        this.aggregateUsers = enabled;
+        this.invalidateDistances();
+    }
+
+    /**
+     * Get the number of users handled separately by placements
+     * @return the number of groups of users if they are aggregated, the number of users otherwise
+     */
+    public int getUserGroupCount() {
+        UserGroups groups = this.getUserGroups();
+        return groups == null ? (int) this.vertexSet().stream().filter(User.class::isInstance).count() : groups.count();
+    }
+
+    /**
+     * Weight users in the score of a data by how often they access it instead of counting them all the same
+     * @param statistics the access frequencies of users, or null to weigh all interested users the same
+     */
+    public void setAccessStatistics(AccessStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Get the access frequencies weighting users in scores
+     * @return the access statistics, null if users all weigh the same
+     */
+    public AccessStatistics getAccessStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Get the groups of equivalent users, built once until the topology changes
+     * @return the groups of users, null if users are not aggregated
+     */
+    UserGroups getUserGroups() {
+        if (!aggregateUsers) return null;
+        UserGroups userGroups = this.groups;
+        if (userGroups == null) {
+            this.groups = userGroups = UserGroups.of(this.freeze(), ordinal -> userOrdinals.get(ordinal) != null);
+        }
+        return userGroups;
+    }
+
+    /**
+     * Get the ordinal of a user of this graph, used to index the {@link DistanceMatrix}
+     * @param user the user
+     * @return the ordinal of the user, -1 if the user isn't part of the graph
+     */
+    public int ordinalOf(User user) {
+        return userOrdinals.of(user);
+    }
+
+    /**
+     * Get the ordinal of a system node of this graph, used to index the {@link DistanceMatrix}
+     * @param node the system node
+     * @return the ordinal of the node, -1 if the node isn't part of the graph
+     */
+    public int ordinalOf(SystemNode node) {
+        return nodeOrdinals.of(node);
+    }
+
+    /**
+     * Get the user having the given ordinal
+     * @param ordinal the ordinal of the user
+     * @return the user or null if no user has this ordinal
+     */
+    public User userAt(int ordinal) {
+        return userOrdinals.get(ordinal);
+    }
+
+    /**
+     * Get the system node having the given ordinal
+     * @param ordinal the ordinal of the system node
+     * @return the system node or null if no node has this ordinal
+     */
+    public SystemNode systemNodeAt(int ordinal) {
+        return nodeOrdinals.get(ordinal);
+    }
+
+    /**
+     * Get the upper bound (exclusive) of the ordinals of system nodes
+     * @return the length needed by an array indexed by system node ordinals
+     */
+    int nodeOrdinalCount() {
+        return nodeOrdinals.capacity();
+    }
+
+    /**
+     * Get the ordinals of the given users
+     * @param users the users of this graph
+     * @return their ordinals, in the same order
+     */
+    protected int[] ordinalsOf(User[] users) {
+        int[] ordinals = new int[users.length];
+        for (int i = 0; i < users.length; i++) ordinals[i] = userOrdinals.of(users[i]);
+        return ordinals;
+    }
+
+    /**
+     * Get the users interested in the given data. The returned array must not be modified.
+     * @param data the id of the data
+     * @return the ordinals of the users interested in the data
+     */
+    protected int[] interestedUsers(int data) {
+        return interests.get(data);
+    }
+
+    /**
+     * Get the users interested in the given data
+     * @param data the data
+     * @return the users of the graph interested in the data
+     */
+    public User[] getInterestedUsers(Data data) {
+        return Arrays.stream(interests.get(data.getId())).mapToObj(userOrdinals::get).toArray(User[]::new);
+    }
+
     /**
      * Connect a user to the graph
      * @param user the user to connect to the graph
@@ -88,6 +505,8 @@ public abstract class AbstractDataGraph extends SimpleWeightedGraph<Node> {
      * @return a not yet used stream of Data
      */
     protected List<Data> getData(User[] users) {
+        // placement is about to read the index, compact it once
+        interests.trim();
         return Arrays.stream(users)
                 .map(User::getInterests)
                 // get a list of all distinct data id needed in the graph
@@ -95,8 +514,8 @@ public abstract class AbstractDataGraph extends SimpleWeightedGraph<Node> {
                 .flatMap(IntStream::boxed)
                 .distinct()
                 // get Data objects from the list of id
+                .map(catalog::get)
                 .filter(Objects::nonNull)
-                .map(Data::getFromId)
                 .collect(Collectors.toList());
     }
 
@@ -110,12 +529,340 @@ public abstract class AbstractDataGraph extends SimpleWeightedGraph<Node> {
      * @return the score of the the data on the given node
      */
     protected double computeScores(SystemNode node, User[] users) {
-        return Arrays
-                .stream(users)
-                .mapToDouble(u -> DijkstraShortestPath.findPathBetween(this, u, node).getWeight())
-                .map(d -> 1 / (d * d))
-                .sum();
+        return this.computeScores(this.getDistances(), this.ordinalOf(node), this.ordinalsOf(users));
+    }
+
+    /**
+     * Compute the score for a data that would be placed on the given node, reading distances from the given oracle.
+     * @param distances the distances of this graph, exact or approximate
+     * @param node the ordinal of the node which the score is calculated from
+     * @param users the ordinals of all users interested in the data
+     * @return the score of the the data on the given node
+     * @see #computeScores(SystemNode, User[])
+     */
+    protected double computeScores(DistanceOracle distances, int node, int[] users) {
+        return this.computeScores(distances, node, users, null);
+    }
+
+    /**
+     * Compute the score for a data that would be placed on the given node, each user counting as much as its weight.
+     * @param distances the distances of this graph, exact or approximate
+     * @param node the ordinal of the node which the score is calculated from
+     * @param users the ordinals of all users interested in the data
+     * @param weights the weight of each user indexed like the users, null if they all weigh 1
+     * @return the score of the the data on the given node
+     * @see #weightsOf(int, int[])
+     */
+    protected double computeScores(DistanceOracle distances, int node, int[] users, double[] weights) {
+        final UserGroups groups = this.getUserGroups();
+        final UserGroups.Weighted weighted = groups == null ? null : groups.compress(users, weights);
+        final int[] scored = weighted == null ? users : weighted.users;
+        final double[] factors = weighted == null ? weights : weighted.weights;
+
+        double score = 0;
+        for (int u = 0; u < scored.length; u++) {
+            double d = distances.get(scored[u], node);
+            score += (factors == null ? 1 : factors[u]) / (d * d);
+        }
+        return score;
+    }
+
+    /**
+     * Compute the scores of a data on several nodes at once. Distances are read one user at a time for all nodes, so
+     * the inner loops run over primitive arrays without any lookup.
+     * @param distances the distances of this graph, exact or approximate
+     * @param nodes the ordinals of the candidate nodes
+     * @param users the ordinals of all users interested in the data
+     * @param scores the array to fill with the score of each candidate node, indexed like the nodes
+     * @see #computeScores(SystemNode, User[])
+     */
+    protected void computeScores(DistanceOracle distances, int[] nodes, int[] users, double[] scores) {
+        this.computeScores(distances, nodes, users, null, scores);
+    }
+
+    /**
+     * Compute the scores of a data on several nodes at once, each user counting as much as its weight.
+     * @param distances the distances of this graph, exact or approximate
+     * @param nodes the ordinals of the candidate nodes
+     * @param users the ordinals of all users interested in the data
+     * @param weights the weight of each user indexed like the users, null if they all weigh 1
+     * @param scores the array to fill with the score of each candidate node, indexed like the nodes
+     * @see #weightsOf(int, int[])
+     */
+    protected void computeScores(DistanceOracle distances, int[] nodes, int[] users, double[] weights,
+                                 double[] scores) {
+        // users of a group are scored once, weighted by the sum of their weights
+        final UserGroups groups = this.getUserGroups();
+        final UserGroups.Weighted weighted = groups == null ? null : groups.compress(users, weights);
+        final int[] scored = weighted == null ? users : weighted.users;
+        final double[] factors = weighted == null ? weights : weighted.weights;
+
+        final double[] row = ArraysUtils.bufferOf(ROWS, nodes.length);
+        Arrays.fill(scores, 0, nodes.length, 0);
+        for (int u = 0; u < scored.length; u++) {
+            distances.get(scored[u], nodes, row);
+            final double factor = factors == null ? 1 : factors[u];
+            for (int i = 0; i < nodes.length; i++) scores[i] += factor / (row[i] * row[i]);
+        }
+    }
+
+    /**
+     * Score a data on a system node as placement strategies do, with the current distances of the graph
+     * @param data the data
+     * @param node the system node
+     * @return the score of the data on the node
+     */
+    public double scoreOf(Data data, SystemNode node) {
+        final int[] users = this.interestedUsers(data.getId());
+        final int ordinal = this.ordinalOf(node);
+        return this.computeScores(this.getDistanceOracle(), ordinal, users, this.weightsOf(data.getId(), users));
+    }
+
+    /**
+     * Score a data on every system node at once as placement strategies do, with the current distances of the graph
+     * @param data the data
+     * @return the score of the data on each system node, indexed by node ordinal, 0 for unused ordinals
+     */
+    public double[] scoresOf(Data data) {
+        final int[] users = this.interestedUsers(data.getId());
+        final int[] nodes = IntStream.range(0, nodeOrdinals.capacity()).toArray();
+        final double[] scores = new double[nodes.length];
+        this.computeScores(this.getDistanceOracle(), nodes, users, this.weightsOf(data.getId(), users), scores);
+        return scores;
     }
 
-    abstract public void placeData();
+    /**
+     * Get how much each user interested in a data counts in its score, from the {@link
+     * #setAccessStatistics(AccessStatistics) access statistics} of the graph
+     * @param data the id of the data
+     * @param users the ordinals of the users interested in the data
+     * @return the weight of each user indexed like the users, null if they all weigh 1
+     */
+    protected double[] weightsOf(int data, int[] users) {
+        final AccessStatistics statistics = this.statistics;
+        if (statistics == null) return null;
+        final double[] weights = new double[users.length];
+        for (int u = 0; u < users.length; u++) weights[u] = statistics.weight(userOrdinals.get(users[u]).getId(), data);
+        return weights;
+    }
+
+    /**
+     * Collect all data users of the graph are interested in and place them on the graph
+     */
+    public void placeData() {
+        List<Data> dataList = this.getData(this.getUsers());
+        long start = System.nanoTime();
+        listener.placementStarted(this, dataList.size());
+        try {
+            this.placeData(dataList);
+        } finally {
+            listener.placementCompleted(this, System.nanoTime() - start);
+        }
+        this.publish();
+    }
+
+    /**
+     * Place data read from a source, a chunk at a time, without loading the whole catalog in memory
+     * @param chunks the source of data descriptors
+     * @param repairCapacity the max number of data deferred because their best node was full
+     * @return the number of placed data
+     * @see StreamingPlacement
+     */
+    public long placeStream(Iterator<DataChunk> chunks, int repairCapacity) {
+        long start = System.nanoTime();
+        listener.placementStarted(this, -1);
+        long placed;
+        try {
+            placed = new StreamingPlacement(this, repairCapacity).place(chunks);
+        } finally {
+            listener.placementCompleted(this, System.nanoTime() - start);
+        }
+        this.publish();
+        return placed;
+    }
+
+    /**
+     * Place the given data on the graph, taking into account data already holden by system nodes
+     * @param dataList the data to place
+     */
+    abstract protected void placeData(List<Data> dataList);
+
+    /**
+     * Connect a new user to the graph and place the data it is interested in.
+     * @param user the user joining the graph
+     * @param node the system node the user is connected to
+     * @param weight the weight of the connection
+     * @return the data moves caused by the new user
+     * @throws IllegalArgumentException if the user is already part of the graph
+     */
+    public PlacementDelta onUserAdded(User user, SystemNode node, double weight) {
+        if (this.containsVertex(user)) throw new IllegalArgumentException("The user is already part of the graph");
+        DistanceMatrix previous = this.distances;
+        this.addVertex(user);
+        this.addEdge(user, node, weight);
+        // users cannot relay data, no other shortest path can go through the new user
+        this.inheritDistances(previous, u -> true);
+        return this.replaceData(user.getInterests());
+    }
+
+    /**
+     * Disconnect a user from the graph and move the data it was interested in. Data nobody else is interested in are
+     * removed from their node.
+     * @param user the user leaving the graph
+     * @return the data moves caused by the user's departure
+     */
+    public PlacementDelta onUserRemoved(User user) {
+        if (!this.containsVertex(user)) return this.replaceData(user.getInterests());
+        DistanceMatrix previous = this.distances;
+        // users cannot relay data, no other shortest path went through the user
+        this.removeVertex(user);
+        this.inheritDistances(previous, u -> true);
+        return this.replaceData(user.getInterests());
+    }
+
+    /**
+     * Change the interests of a user of the graph and move data whose interested users changed
+     * @param user the user
+     * @param interests the new interests of the user
+     * @return the data moves caused by the change
+     */
+    public PlacementDelta onInterestChanged(User user, int... interests) {
+        int ordinal = userOrdinals.of(user);
+        if (ordinal < 0) throw new IllegalArgumentException("The user is not part of the graph");
+
+        int[] previous = user.getInterests();
+        this.interests.remove(ordinal, previous);
+        user.setInterests(interests);
+        this.interests.add(ordinal, interests);
+
+        // only data gained or lost by the user have a different set of interested users
+        return this.replaceData(IntStream.concat(
+                Arrays.stream(previous).filter(id -> !arrayContains(interests, id)),
+                Arrays.stream(interests).filter(id -> !arrayContains(previous, id))
+        ).toArray());
+    }
+
+    /**
+     * Change the weight of a link and move data whose interested users got closer or further to nodes
+     * @param source a vertex of the link
+     * @param target the other vertex of the link
+     * @param weight the new weight of the link
+     * @return the data moves caused by the change
+     */
+    public PlacementDelta onEdgeWeightChanged(Node source, Node target, double weight) {
+        DefaultWeightedEdge edge = this.getEdge(source, target);
+        if (edge == null) throw new IllegalArgumentException("There is no link between these nodes");
+        double old = this.getEdgeWeight(edge);
+        DistanceMatrix previous = this.distances;
+
+        // users cannot relay data, the link of a user only changes the distances of this user
+        if (source instanceof User || target instanceof User) {
+            this.setEdgeWeight(edge, weight);
+            User user = source instanceof User ? (User) source : (User) target;
+            int ordinal = this.ordinalOf(user);
+            this.inheritDistances(previous, u -> u != ordinal);
+            return this.replaceData(user.getInterests());
+        }
+
+        // only users with a shortest path along the link at its lowest weight can see their distances change:
+        // before the change if the link gets longer, after it if the link gets shorter
+        if (weight < old) this.setEdgeWeight(edge, weight);
+        CompactGraph graph = this.freeze();
+        int[] ends = {this.vertexOf(graph, source), this.vertexOf(graph, target)};
+        double lowest = Math.min(old, weight);
+        boolean[] changed = this.usersRoutedBetween(graph, ends, new double[][]{{0, lowest}, {lowest, 0}});
+        if (weight > old) this.setEdgeWeight(edge, weight);
+
+        this.inheritDistances(previous, u -> !changed[u]);
+        return this.replaceData(this.interestsOf(changed).toArray());
+    }
+
+    /**
+     * Reuse the rows of a previous distance matrix whose distances are known to be unchanged
+     * @param previous the matrix before the change, may be null
+     * @param unchanged tells whether the distances of a user are unchanged
+     */
+    private void inheritDistances(DistanceMatrix previous, IntPredicate unchanged) {
+        if (previous != null) this.getDistances().inherit(previous, unchanged);
+    }
+
+    private int vertexOf(CompactGraph graph, Node node) {
+        if (node instanceof User) return graph.userVertex(this.ordinalOf((User) node));
+        return graph.nodeVertex(this.ordinalOf((SystemNode) node));
+    }
+
+    /**
+     * Find the users with a shortest path going along one of the given paths. Only searches from the ends of the paths
+     * are needed: a user is routed along the path from one end to another if reaching the first end and following the
+     * path is as short as reaching the other end directly.
+     * @param graph the frozen graph
+     * @param ends the vertices at the ends of the paths
+     * @param lengths the length of the path between each pair of ends
+     * @return whether each user, by ordinal, is routed along a path
+     */
+    private boolean[] usersRoutedBetween(CompactGraph graph, int[] ends, double[][] lengths) {
+        final IndexedMinHeap heap = new IndexedMinHeap(graph.vertexCount());
+        final double[][] from = new double[ends.length][graph.vertexCount()];
+        for (int e = 0; e < ends.length; e++) graph.distancesToNodes(ends[e], heap, from[e]);
+
+        final boolean[] routed = new boolean[graph.userCount()];
+        for (int u = 0; u < routed.length; u++) {
+            int vertex = graph.userVertex(u);
+            for (int a = 0; a < ends.length && !routed[u]; a++) {
+                for (int b = 0; b < ends.length && !routed[u]; b++) {
+                    double direct = from[b][vertex], through = from[a][vertex] + lengths[a][b];
+                    // ties and rounding count as routed, a user found routed by mistake only has its data placed again
+                    routed[u] = a != b && !Double.isInfinite(through) && through <= direct * (1 + 1e-9);
+                }
+            }
+        }
+        return routed;
+    }
+
+    /**
+     * Get the interests of the given users
+     * @param users whether each user, by ordinal, is selected
+     * @return the ids of the data the selected users are interested in
+     */
+    private IntStream interestsOf(boolean[] users) {
+        return IntStream.range(0, users.length)
+                .filter(u -> users[u] && userOrdinals.get(u) != null)
+                .flatMap(u -> Arrays.stream(userOrdinals.get(u).getInterests()));
+    }
+
+    /**
+     * Remove the given data from their node and place them again. If placement fails, every node gets back the data it
+     * held before.
+     * @param dataIds the ids of the data to move
+     * @return the resulting moves
+     */
+    private PlacementDelta replaceData(int[] dataIds) {
+        // the published placement tells what nodes hold, unless they were changed outside of a placement since
+        Placement before = this.placement;
+        if (!before.isCurrent(this)) before = before.next(this, before.getVersion());
+        List<Data> dataList = new ArrayList<>();
+
+        for (int id : Arrays.stream(dataIds).distinct().toArray()) {
+            for (int holder : before.holders(id)) before.nodeAt(holder).removeFromStorage(id);
+            Data data = catalog.get(id);
+            if (data != null && interests.get(id).length > 0) dataList.add(data);
+        }
+
+        interests.trim();
+        try {
+            if (!dataList.isEmpty()) this.placeData(dataList);
+        } catch (RuntimeException e) {
+            for (int ordinal = 0; ordinal < before.nodeOrdinalCount(); ordinal++) {
+                if (!before.hasChanged(ordinal)) continue;
+                SystemNode node = before.nodeAt(ordinal);
+                int[] ids = before.dataAt(ordinal), sizes = before.sizesAt(ordinal);
+                node.clear();
+                for (int i = 0; i < ids.length; i++) node.addToStorage(ids[i], sizes[i]);
+            }
+            throw e;
+        }
+        Placement after = before.next(this, placement.getVersion() + 1);
+        this.publish(after);
+        return PlacementDelta.between(before, after);
+    }
 }
@@ -0,0 +1,233 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.Node;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import net.nowtryz.datastorage.util.IndexedMinHeap;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Immutable compressed sparse row view of an {@link AbstractDataGraph}. The links of vertex {@code v} are
+ * {@code targets[offsets[v]..offsets[v + 1])} with their weight at the same index in {@code weights}, each link being
+ * stored once per direction.
+ *
+ * <p>Vertices are numbered from the ordinals of the graph: users first, then system nodes. Slots of ordinals not in use
+ * are isolated vertices.
+ */
+public class CompactGraph {
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+    private final BitSet users;
+    private final BitSet nodes;
+    private final int userCount;
+    private final int nodeCount;
+
+    private CompactGraph(int[] offsets, int[] targets, double[] weights, BitSet users, BitSet nodes, int userCount,
+                         int nodeCount) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.users = users;
+        this.nodes = nodes;
+        this.userCount = userCount;
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * Freeze the current state of a graph
+     * @param graph the graph
+     * @param userCount the upper bound of user ordinals
+     * @param nodeCount the upper bound of system node ordinals
+     * @return the compact graph
+     */
+    static CompactGraph of(AbstractDataGraph graph, int userCount, int nodeCount) {
+        final int vertexCount = userCount + nodeCount;
+        final int[] sources = new int[graph.edgeSet().size()];
+        final int[] destinations = new int[sources.length];
+        final double[] edgeWeights = new double[sources.length];
+        final int[] offsets = new int[vertexCount + 1];
+
+        int e = 0;
+        for (DefaultWeightedEdge edge : graph.edgeSet()) {
+            sources[e] = vertexOf(graph, graph.getEdgeSource(edge), userCount);
+            destinations[e] = vertexOf(graph, graph.getEdgeTarget(edge), userCount);
+            edgeWeights[e] = graph.getEdgeWeight(edge);
+            offsets[sources[e] + 1]++;
+            offsets[destinations[e] + 1]++;
+            e++;
+        }
+        for (int v = 0; v < vertexCount; v++) offsets[v + 1] += offsets[v];
+
+        final int[] targets = new int[2 * sources.length];
+        final double[] weights = new double[targets.length];
+        final int[] next = Arrays.copyOf(offsets, vertexCount);
+        for (e = 0; e < sources.length; e++) {
+            int forward = next[sources[e]]++;
+            targets[forward] = destinations[e];
+            weights[forward] = edgeWeights[e];
+            int backward = next[destinations[e]]++;
+            targets[backward] = sources[e];
+            weights[backward] = edgeWeights[e];
+        }
+
+        final BitSet users = new BitSet(vertexCount);
+        users.set(0, userCount);
+        final BitSet nodes = new BitSet(nodeCount);
+        for (int ordinal = 0; ordinal < nodeCount; ordinal++) {
+            if (graph.systemNodeAt(ordinal) != null) nodes.set(ordinal);
+        }
+        return new CompactGraph(offsets, targets, weights, users, nodes, userCount, nodeCount);
+    }
+
+    private static int vertexOf(AbstractDataGraph graph, Node node, int userCount) {
+        if (node instanceof User) return graph.ordinalOf((User) node);
+        return userCount + graph.ordinalOf((SystemNode) node);
+    }
+
+    /**
+     * Get the number of vertices
+     * @return the number of vertices, including unused ordinals
+     */
+    public int vertexCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Get the vertex of a user
+     * @param ordinal the ordinal of the user in the graph
+     * @return the vertex
+     */
+    public int userVertex(int ordinal) {
+        return ordinal;
+    }
+
+    /**
+     * Get the vertex of a system node
+     * @param ordinal the ordinal of the node in the graph
+     * @return the vertex
+     */
+    public int nodeVertex(int ordinal) {
+        return userCount + ordinal;
+    }
+
+    /**
+     * Get the ordinal of the system node of a vertex
+     * @param vertex a vertex that is not a user
+     * @return the ordinal of the node
+     */
+    public int nodeOrdinal(int vertex) {
+        return vertex - userCount;
+    }
+
+    /**
+     * Check whether a vertex is a user
+     * @param vertex the vertex
+     * @return true for users, false for system nodes
+     */
+    public boolean isUser(int vertex) {
+        return users.get(vertex);
+    }
+
+    /**
+     * Get the upper bound of user ordinals
+     * @return the number of user slots
+     */
+    public int userCount() {
+        return userCount;
+    }
+
+    /**
+     * Get the upper bound of system node ordinals
+     * @return the number of system node slots
+     */
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Get the first ordinal in use by a system node, starting from the given one
+     * @param ordinal the ordinal to start from
+     * @return the ordinal of a node, -1 if no node has this ordinal or a higher one
+     */
+    public int nextNode(int ordinal) {
+        return nodes.nextSetBit(ordinal);
+    }
+
+    /**
+     * Get the number of system nodes, not counting unused ordinals
+     * @return the number of system nodes
+     */
+    public int liveNodeCount() {
+        return nodes.cardinality();
+    }
+
+    /**
+     * Get the index of the first link of a vertex in {@link #target(int)} and {@link #weight(int)}
+     * @param vertex the vertex
+     * @return the index of its first link
+     */
+    public int firstLink(int vertex) {
+        return offsets[vertex];
+    }
+
+    /**
+     * Get the index following the last link of a vertex
+     * @param vertex the vertex
+     * @return the end index of its links
+     */
+    public int endLink(int vertex) {
+        return offsets[vertex + 1];
+    }
+
+    /**
+     * Get the target of a link
+     * @param link the index of the link
+     * @return the vertex the link leads to
+     */
+    public int target(int link) {
+        return targets[link];
+    }
+
+    /**
+     * Get the weight of a link
+     * @param link the index of the link
+     * @return the weight of the link
+     */
+    public double weight(int link) {
+        return weights[link];
+    }
+
+    /**
+     * Compute the shortest distances from a vertex to all system nodes. Users cannot relay data, so only the source can
+     * be a user along a path: other users are reached but never searched from.
+     * @param source the source vertex
+     * @param heap a heap of at least {@link #vertexCount()} elements, empty
+     * @param distances the array receiving the distance of every vertex, of at least {@link #vertexCount()} elements
+     * @return the distances to system nodes, indexed by node ordinal
+     */
+    double[] distancesToNodes(int source, IndexedMinHeap heap, double[] distances) {
+        Arrays.fill(distances, 0, this.vertexCount(), Double.POSITIVE_INFINITY);
+        distances[source] = 0;
+        heap.offer(source, 0);
+
+        while (!heap.isEmpty()) {
+            int vertex = heap.poll();
+            if (vertex != source && users.get(vertex)) continue;
+            double distance = distances[vertex];
+            for (int link = offsets[vertex]; link < offsets[vertex + 1]; link++) {
+                int target = targets[link];
+                double candidate = distance + weights[link];
+                if (candidate < distances[target]) {
+                    distances[target] = candidate;
+                    heap.offer(target, candidate);
+                }
+            }
+        }
+
+        return Arrays.copyOfRange(distances, userCount, userCount + nodeCount);
+    }
+}
@@ -0,0 +1,97 @@
+package net.nowtryz.datastorage.graph;
+
+import java.util.Arrays;
+
+/**
+ * A bounded batch of data descriptors for {@link StreamingPlacement}. Each descriptor is made of the id and the size of
+ * a data along with the ids of the users interested in it, all stored in primitive arrays.
+ */
+public class DataChunk {
+    private final int capacity;
+    private int count = 0;
+    private int[] ids;
+    private int[] sizes;
+    private int[] offsets;
+    private int[] users = new int[16];
+
+    /**
+     * Create an empty chunk
+     * @param capacity the max number of data of the chunk
+     */
+    public DataChunk(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("The capacity of a chunk must be positive");
+        this.capacity = capacity;
+        this.ids = new int[capacity];
+        this.sizes = new int[capacity];
+        this.offsets = new int[capacity + 1];
+    }
+
+    /**
+     * Add a data to the chunk
+     * @param id the id of the data
+     * @param size the size of the data
+     * @param userIds the ids of the users interested in the data
+     * @throws IllegalStateException if the chunk is full
+     */
+    public void add(int id, int size, int... userIds) {
+        if (this.isFull()) throw new IllegalStateException("The chunk is full");
+        int start = offsets[count];
+        if (start + userIds.length > users.length) {
+            users = Arrays.copyOf(users, Math.max(users.length * 2, start + userIds.length));
+        }
+        System.arraycopy(userIds, 0, users, start, userIds.length);
+        ids[count] = id;
+        sizes[count] = size;
+        offsets[++count] = start + userIds.length;
+    }
+
+    /**
+     * Check whether the chunk has reached its capacity
+     * @return true if no data can be added anymore
+     */
+    public boolean isFull() {
+        return count == capacity;
+    }
+
+    /**
+     * Get the number of data of the chunk
+     * @return the number of data
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the id of a data of the chunk
+     * @param index the index of the data in the chunk
+     * @return the id of the data
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Get the size of a data of the chunk
+     * @param index the index of the data in the chunk
+     * @return the size of the data
+     */
+    public int getSize(int index) {
+        return sizes[index];
+    }
+
+    /**
+     * Get the ids of the users interested in a data of the chunk
+     * @param index the index of the data in the chunk
+     * @return a new array with the ids of interested users
+     */
+    public int[] getUsers(int index) {
+        return Arrays.copyOfRange(users, offsets[index], offsets[index + 1]);
+    }
+
+    /**
+     * Empty the chunk so it can be filled again
+     */
+    public void clear() {
+        count = 0;
+    }
+}
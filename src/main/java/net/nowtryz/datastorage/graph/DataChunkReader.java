@@ -0,0 +1,99 @@
+package net.nowtryz.datastorage.graph;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read data descriptors from a text file, a chunk at a time. Each line describes a data as its id, its size and the ids
+ * of interested users, separated by blanks. Empty lines and lines starting with {@code #} are ignored. A malformed
+ * line makes {@link #hasNext()} and {@link #next()} throw an {@link IllegalArgumentException} naming the line.
+ *
+ * <p>The same chunk instance is filled again on each call to {@link #next()}, so only one chunk is in memory.
+ */
+public class DataChunkReader implements Iterator<DataChunk>, Closeable {
+    private final Path path;
+    private final BufferedReader reader;
+    private final DataChunk chunk;
+    private boolean filled = false;
+    private boolean exhausted = false;
+    private int line = 0;
+
+    /**
+     * Open a file of data descriptors
+     * @param path the path of the file
+     * @param chunkSize the number of data per chunk
+     * @throws IOException if the file cannot be opened
+     */
+    public DataChunkReader(Path path, int chunkSize) throws IOException {
+        this.path = path;
+        this.reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        this.chunk = new DataChunk(chunkSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        if (!filled && !exhausted) this.fill();
+        return filled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataChunk next() {
+        if (!this.hasNext()) throw new NoSuchElementException();
+        filled = false;
+        return chunk;
+    }
+
+    private void fill() {
+        chunk.clear();
+        try {
+            String text;
+            while (!chunk.isFull() && (text = reader.readLine()) != null) {
+                line++;
+                text = text.trim();
+                if (text.isEmpty() || text.startsWith("#")) continue;
+
+                String[] fields = text.split("\\s+");
+                if (fields.length < 2) {
+                    throw new IllegalArgumentException("Line " + line + " of " + path + " has " + fields.length +
+                            " values, expected at least 2");
+                }
+                int[] users = new int[fields.length - 2];
+                for (int i = 0; i < users.length; i++) users[i] = this.parse(fields[i + 2]);
+                chunk.add(this.parse(fields[0]), this.parse(fields[1]), users);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        exhausted = !chunk.isFull();
+        filled = chunk.size() > 0;
+    }
+
+    private int parse(String field) {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number " + field + " at line " + line + " of " + path, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,161 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import net.nowtryz.datastorage.metrics.PlacementListener;
+import net.nowtryz.datastorage.util.IndexedMinHeap;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntPredicate;
+
+/**
+ * Shortest distances from every user of a graph to every system node of this graph. Rows are indexed by user ordinal
+ * and columns by system node ordinal. Each row is computed lazily with a single-source search the first time the user
+ * is queried, so a placement run does one search per user instead of one per (data, node, user) triple. Searches run
+ * on the {@link CompactGraph} of the graph and reuse per-thread buffers shared by all matrices. Users cannot relay
+ * data, paths only go through system nodes.
+ *
+ * <p>Users of the same {@link UserGroups group} share the row of their representative, their distances being the same.
+ *
+ * <p>A matrix reflects the graph at the time it was created, the graph drops it as soon as its topology changes.
+ */
+public class DistanceMatrix implements DistanceOracle {
+    // a single buffer per thread, grown to the largest graph the thread searched, matrices come and go with topologies
+    private static final ThreadLocal<Search> SEARCHES = new ThreadLocal<>();
+
+    private final CompactGraph graph;
+    private final User[] users;
+    private final SystemNode[] nodes;
+    private final AtomicReferenceArray<double[]> rows;
+    private final PlacementListener listener;
+    private final UserGroups groups;
+
+    /**
+     * Create the distance matrix of the given graph
+     * @param graph the frozen graph to compute distances on
+     * @param users the users of the graph, indexed by ordinal
+     * @param nodes the system nodes of the graph, indexed by ordinal
+     * @param listener the listener notified of searches and of rows kept from previous matrices
+     * @param groups the groups of users sharing the same distances, null to compute a row per user
+     */
+    DistanceMatrix(CompactGraph graph, User[] users, SystemNode[] nodes, PlacementListener listener,
+                   UserGroups groups) {
+        this.graph = graph;
+        this.users = users;
+        this.nodes = nodes;
+        this.rows = new AtomicReferenceArray<>(users.length);
+        this.listener = listener;
+        this.groups = groups;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double get(int user, int node) {
+        return this.row(user)[node];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void get(int user, int[] nodes, double[] distances) {
+        final double[] row = this.row(user);
+        for (int i = 0; i < nodes.length; i++) distances[i] = row[nodes[i]];
+    }
+
+    /**
+     * Get the distances from a user to all system nodes. The returned array must not be modified.
+     * @param user the ordinal of the user
+     * @return the distances indexed by system node ordinal
+     */
+    public double[] row(int user) {
+        final int slot = this.slotOf(user);
+        double[] row = rows.get(slot);
+        if (row == null) {
+            row = this.computeRow(slot);
+            // another thread may have been faster, keep its row so every reader sees the same array
+            if (!rows.compareAndSet(slot, null, row)) row = rows.get(slot);
+        }
+        return row;
+    }
+
+    /**
+     * Check whether the row of the given user has already been computed
+     * @param user the ordinal of the user
+     * @return true if the distances of this user are cached
+     */
+    public boolean isComputed(int user) {
+        return rows.get(this.slotOf(user)) != null;
+    }
+
+    /**
+     * Get the number of rows of the matrix
+     * @return the upper bound of user ordinals
+     */
+    public int userCount() {
+        return users.length;
+    }
+
+    /**
+     * Get the number of columns of the matrix
+     * @return the upper bound of system node ordinals
+     */
+    public int nodeCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Copy the rows already computed by a previous matrix of the same graph, for users and nodes that did not change.
+     * Callers must ensure the distances of these users are not affected by the changes made to the graph since.
+     * @param previous the previous matrix
+     * @param unchanged tells whether the distances of a user, by ordinal, are the same as in the previous matrix
+     */
+    void inherit(DistanceMatrix previous, IntPredicate unchanged) {
+        if (!this.hasSameNodes(previous)) return;
+        for (int u = 0; u < Math.min(users.length, previous.users.length); u++) {
+            if (this.slotOf(u) != u || !unchanged.test(u)) continue;
+            double[] row = previous.rows.get(previous.slotOf(u));
+            if (row == null || users[u] == null || users[u] != previous.users[u]) continue;
+            // reported once per kept row, reads of cached rows are far too frequent to be reported
+            if (rows.compareAndSet(u, null, row)) listener.distancesReused(u);
+        }
+    }
+
+    private int slotOf(int user) {
+        return groups == null ? user : groups.representativeOf(user);
+    }
+
+    private boolean hasSameNodes(DistanceMatrix other) {
+        return Arrays.equals(nodes, other.nodes);
+    }
+
+    private double[] computeRow(int user) {
+        Search search = searchOf(graph.vertexCount());
+        long start = System.nanoTime();
+        double[] row = graph.distancesToNodes(graph.userVertex(user), search.heap, search.distances);
+        listener.distancesComputed(user, System.nanoTime() - start);
+        return row;
+    }
+
+    private static Search searchOf(int vertexCount) {
+        Search search = SEARCHES.get();
+        if (search == null || search.distances.length < vertexCount) SEARCHES.set(search = new Search(vertexCount));
+        return search;
+    }
+
+    /**
+     * Buffers of a single-source search, reused by a thread for all rows it computes
+     */
+    private static class Search {
+        final IndexedMinHeap heap;
+        final double[] distances;
+
+        Search(int vertexCount) {
+            this.heap = new IndexedMinHeap(vertexCount);
+            this.distances = new double[vertexCount];
+        }
+    }
+}
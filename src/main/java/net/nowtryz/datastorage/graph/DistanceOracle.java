@@ -0,0 +1,24 @@
+package net.nowtryz.datastorage.graph;
+
+/**
+ * Source of user to system node distances used to score data placements
+ */
+public interface DistanceOracle {
+    /**
+     * Get the distance from a user to a system node
+     * @param user the ordinal of the user
+     * @param node the ordinal of the system node
+     * @return the distance, {@link Double#POSITIVE_INFINITY} if unreachable
+     */
+    double get(int user, int node);
+
+    /**
+     * Get the distances from a user to several system nodes at once
+     * @param user the ordinal of the user
+     * @param nodes the ordinals of the system nodes
+     * @param distances the array to fill, indexed like the nodes
+     */
+    default void get(int user, int[] nodes, double[] distances) {
+        for (int i = 0; i < nodes.length; i++) distances[i] = this.get(user, nodes[i]);
+    }
+}
@@ -0,0 +1,317 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.util.IndexedMinHeap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Multilevel partitioner splitting a {@link CompactGraph} in regions of similar weight while cutting as few strong
+ * links as possible. Links are stronger the shorter they are, the strength of a link being the inverse of its weight.
+ *
+ * <p>The graph is first coarsened: each vertex is merged with the neighbour it is most strongly linked to, and again on
+ * the merged graph, until it is small enough. Regions are grown on the coarsest graph along its strongest links, then
+ * the partition is projected back level by level, each time moving boundary vertices to the region they are the most
+ * strongly linked to as long as regions stay balanced.
+ */
+public class GraphPartitioner {
+    private static final int VERTICES_PER_PART = 16;
+    private static final int REFINEMENT_PASSES = 16;
+    // links weaker than this fraction of the strongest link of a vertex are not worth merging along
+    private static final double WEAK_LINK = 0.25;
+
+    private final int parts;
+    private final double imbalance;
+
+    /**
+     * Create a partitioner allowing regions to be 10% heavier than average
+     * @param parts the number of regions
+     */
+    public GraphPartitioner(int parts) {
+        this(parts, 0.1);
+    }
+
+    /**
+     * Create a partitioner
+     * @param parts the number of regions
+     * @param imbalance how much heavier than average a region can be, 0.1 for 10%
+     */
+    public GraphPartitioner(int parts, double imbalance) {
+        if (parts <= 0) throw new IllegalArgumentException("At least one region is needed");
+        if (imbalance < 0) throw new IllegalArgumentException("The imbalance must be positive");
+        this.parts = parts;
+        this.imbalance = imbalance;
+    }
+
+    /**
+     * Get the number of regions graphs are split in
+     * @return the number of regions
+     */
+    public int getParts() {
+        return parts;
+    }
+
+    /**
+     * Split a graph in regions
+     * @param graph the graph to split
+     * @param weights the weight of each vertex, 0 for vertices that don't matter such as unused ordinals
+     * @return the region of each vertex, in <i>[0, parts)</i>
+     */
+    public int[] partition(CompactGraph graph, int[] weights) {
+        Level level = Level.of(graph, weights);
+        final long total = Arrays.stream(weights).asLongStream().sum();
+        final long maxCluster = Math.max(1, total / (4L * parts));
+
+        // coarsen until the graph is small or merging does not shrink it anymore
+        final List<Level> levels = new ArrayList<>();
+        levels.add(level);
+        while (level.size > VERTICES_PER_PART * parts) {
+            Level coarse = level.coarsen(maxCluster);
+            if (coarse.size > 0.9 * level.size) break;
+            levels.add(coarse);
+            level = coarse;
+        }
+
+        final long maxPart = Math.max((long) Math.ceil((1 + imbalance) * total / parts), maxCluster);
+        int[] regions = level.initialPartition(parts, total);
+        level.refine(regions, parts, maxPart);
+
+        // project back to the finer levels
+        for (int l = levels.size() - 2; l >= 0; l--) {
+            Level fine = levels.get(l);
+            int[] projected = new int[fine.size];
+            for (int v = 0; v < fine.size; v++) projected[v] = regions[fine.cluster[v]];
+            regions = projected;
+            fine.refine(regions, parts, maxPart);
+        }
+        return regions;
+    }
+
+    /**
+     * Weighted undirected graph of one level of coarsening
+     */
+    private static class Level {
+        final int size;
+        final int[] offsets;
+        final int[] targets;
+        final double[] strengths;
+        final long[] weights;
+        // vertex of the next coarser level each vertex is merged in
+        int[] cluster;
+
+        Level(int[] offsets, int[] targets, double[] strengths, long[] weights) {
+            this.size = weights.length;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.strengths = strengths;
+            this.weights = weights;
+        }
+
+        static Level of(CompactGraph graph, int[] weights) {
+            final int size = graph.vertexCount();
+            final int[] offsets = new int[size + 1];
+            for (int v = 0; v < size; v++) offsets[v + 1] = graph.endLink(v);
+            final int[] targets = new int[offsets[size]];
+            final double[] strengths = new double[targets.length];
+            for (int link = 0; link < targets.length; link++) {
+                targets[link] = graph.target(link);
+                strengths[link] = 1 / Math.max(graph.weight(link), 1e-9);
+            }
+            return new Level(offsets, targets, strengths, Arrays.stream(weights).asLongStream().toArray());
+        }
+
+        /**
+         * Merge each vertex with its most strongly linked neighbour. Vertices left alone join the cluster of their
+         * strongest neighbour, so the leaves of a star are merged in their center.
+         * @param maxCluster the max weight of a merged vertex
+         * @return the coarser level
+         */
+        Level coarsen(long maxCluster) {
+            cluster = new int[size];
+            Arrays.fill(cluster, -1);
+            final long[] clusterWeights = new long[size];
+            int clusters = 0;
+
+            // heavy edge matching
+            for (int v = 0; v < size; v++) {
+                if (cluster[v] >= 0) continue;
+                final long weight = weights[v];
+                int best = this.strongestNeighbour(v, u -> cluster[u] < 0 && weight + weights[u] <= maxCluster);
+                cluster[v] = clusters;
+                clusterWeights[clusters] = weights[v];
+                if (best >= 0) {
+                    cluster[best] = clusters;
+                    clusterWeights[clusters] += weights[best];
+                }
+                clusters++;
+            }
+
+            // vertices still alone join a neighbouring cluster
+            final int[] members = new int[clusters];
+            for (int v = 0; v < size; v++) members[cluster[v]]++;
+            for (int v = 0; v < size; v++) {
+                if (members[cluster[v]] > 1) continue;
+                final int own = cluster[v];
+                final long weight = weights[v];
+                int best = this.strongestNeighbour(v, u -> cluster[u] != own
+                        && clusterWeights[cluster[u]] + weight <= maxCluster);
+                if (best < 0) continue;
+                members[cluster[v]]--;
+                cluster[v] = cluster[best];
+                members[cluster[v]]++;
+                clusterWeights[cluster[v]] += weights[v];
+            }
+
+            // number non empty clusters
+            final int[] renumber = new int[members.length];
+            int count = 0;
+            for (int c = 0; c < members.length; c++) renumber[c] = members[c] > 0 ? count++ : -1;
+            for (int v = 0; v < size; v++) cluster[v] = renumber[cluster[v]];
+            return this.contract(count);
+        }
+
+        /**
+         * Find the neighbour a vertex is the most strongly linked to, ignoring weak links so clusters don't span cuts
+         */
+        private int strongestNeighbour(int v, IntPredicate eligible) {
+            double strongest = 0;
+            for (int link = offsets[v]; link < offsets[v + 1]; link++) strongest = Math.max(strongest, strengths[link]);
+
+            int best = -1;
+            double strength = 0;
+            for (int link = offsets[v]; link < offsets[v + 1]; link++) {
+                int u = targets[link];
+                boolean strong = strengths[link] >= WEAK_LINK * strongest;
+                if (u != v && strong && strengths[link] > strength && eligible.test(u)) {
+                    best = u;
+                    strength = strengths[link];
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Build the graph of clusters, links between the same clusters being summed
+         */
+        private Level contract(int count) {
+            final long[] coarseWeights = new long[count];
+            final int[][] members = new int[count][];
+            final int[] memberCount = new int[count];
+            for (int v = 0; v < size; v++) {
+                coarseWeights[cluster[v]] += weights[v];
+                memberCount[cluster[v]]++;
+            }
+            for (int c = 0; c < count; c++) members[c] = new int[memberCount[c]];
+            Arrays.fill(memberCount, 0);
+            for (int v = 0; v < size; v++) members[cluster[v]][memberCount[cluster[v]]++] = v;
+
+            final int[] offsets = new int[count + 1];
+            int[] targets = new int[this.targets.length];
+            double[] strengths = new double[this.targets.length];
+            final int[] position = new int[count];
+            Arrays.fill(position, -1);
+            int links = 0;
+            for (int c = 0; c < count; c++) {
+                final int start = links;
+                for (int v : members[c]) {
+                    for (int link = this.offsets[v]; link < this.offsets[v + 1]; link++) {
+                        int target = cluster[this.targets[link]];
+                        if (target == c) continue;
+                        if (position[target] < start) {
+                            position[target] = links;
+                            targets[links] = target;
+                            strengths[links++] = this.strengths[link];
+                        } else strengths[position[target]] += this.strengths[link];
+                    }
+                }
+                offsets[c + 1] = links;
+            }
+            return new Level(offsets, Arrays.copyOf(targets, links), Arrays.copyOf(strengths, links), coarseWeights);
+        }
+
+        /**
+         * Grow regions one at a time from a seed, each time taking the vertex the most strongly linked to the region,
+         * until the region has its share of the weight. The last region takes the vertices left.
+         */
+        int[] initialPartition(int parts, long total) {
+            final int[] regions = new int[size];
+            Arrays.fill(regions, -1);
+            // vertices next to the region, keyed by the opposite of their link to it
+            final IndexedMinHeap frontier = new IndexedMinHeap(size);
+            final double[] linked = new double[size];
+            long remaining = total;
+            int seed = 0;
+
+            for (int region = 0; region < parts - 1; region++) {
+                final long share = remaining / (parts - region);
+                long weight = 0;
+                while (weight < share) {
+                    int v;
+                    if (!frontier.isEmpty()) v = frontier.poll();
+                    else {
+                        // the component is exhausted, start again from another one
+                        while (seed < size && regions[seed] >= 0) seed++;
+                        if (seed == size) break;
+                        v = seed;
+                    }
+                    regions[v] = region;
+                    weight += weights[v];
+                    for (int link = offsets[v]; link < offsets[v + 1]; link++) {
+                        int u = targets[link];
+                        if (regions[u] >= 0) continue;
+                        linked[u] += strengths[link];
+                        frontier.offer(u, -linked[u]);
+                    }
+                }
+                frontier.clear();
+                Arrays.fill(linked, 0);
+                remaining -= weight;
+            }
+
+            for (int v = 0; v < size; v++) if (regions[v] < 0) regions[v] = parts - 1;
+            return regions;
+        }
+
+        /**
+         * Move vertices to the region they are the most strongly linked to while it lowers the cut and keeps regions
+         * under the max weight
+         */
+        void refine(int[] regions, int parts, long maxPart) {
+            final long[] partWeights = new long[parts];
+            for (int v = 0; v < size; v++) partWeights[regions[v]] += weights[v];
+            final double[] linked = new double[parts];
+
+            for (int pass = 0; pass < REFINEMENT_PASSES; pass++) {
+                int moves = 0;
+                for (int v = 0; v < size; v++) {
+                    final int own = regions[v];
+                    boolean boundary = false;
+                    for (int link = offsets[v]; link < offsets[v + 1]; link++) {
+                        linked[regions[targets[link]]] += strengths[link];
+                        boundary |= regions[targets[link]] != own;
+                    }
+
+                    int best = own;
+                    if (boundary) {
+                        for (int link = offsets[v]; link < offsets[v + 1]; link++) {
+                            int region = regions[targets[link]];
+                            boolean fits = partWeights[region] + weights[v] <= maxPart;
+                            if (fits && linked[region] > linked[best]) best = region;
+                        }
+                    }
+                    for (int link = offsets[v]; link < offsets[v + 1]; link++) linked[regions[targets[link]]] = 0;
+
+                    if (best != own) {
+                        regions[v] = best;
+                        partWeights[own] -= weights[v];
+                        partWeights[best] += weights[v];
+                        moves++;
+                    }
+                }
+                if (moves == 0) break;
+            }
+        }
+    }
+}
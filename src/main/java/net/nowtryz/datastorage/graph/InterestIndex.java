@@ -0,0 +1,84 @@
+package net.nowtryz.datastorage.graph;
+
+import java.util.Arrays;
+
+/**
+ * Inverted index of user interests: for each data id, the ordinals of the users interested in it. The index is updated
+ * each time a user joins or leaves the graph so interested users never have to be searched by scanning all users.
+ */
+class InterestIndex {
+    private static final int[] NONE = new int[0];
+    private int[][] users = new int[16][];
+    private int[] counts = new int[16];
+
+    /**
+     * Register the interests of a user
+     * @param user the ordinal of the user
+     * @param interests the ids of the data the user is interested in
+     */
+    void add(int user, int[] interests) {
+        for (int data : interests) {
+            if (data < 0) continue;
+            this.ensureCapacity(data);
+            int[] list = users[data];
+            int count = counts[data];
+            // a data listed twice by the same user only counts once
+            if (count > 0 && list[count - 1] == user) continue;
+
+            if (list == null) list = users[data] = new int[4];
+            else if (count == list.length) list = users[data] = Arrays.copyOf(list, Math.max(4, count * 2));
+            list[count] = user;
+            counts[data] = count + 1;
+        }
+    }
+
+    /**
+     * Unregister the interests of a user
+     * @param user the ordinal of the user
+     * @param interests the ids of the data the user was interested in
+     */
+    void remove(int user, int[] interests) {
+        for (int data : interests) {
+            if (data < 0 || data >= counts.length) continue;
+            int[] list = users[data];
+            int count = counts[data];
+            for (int i = 0; i < count; i++) {
+                if (list[i] == user) {
+                    // keep the order of remaining users so results stay deterministic
+                    System.arraycopy(list, i + 1, list, i, count - i - 1);
+                    counts[data] = count - 1;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the users interested in a data. The returned array must not be modified.
+     * @param data the id of the data
+     * @return the ordinals of interested users
+     */
+    int[] get(int data) {
+        if (data < 0 || data >= counts.length || counts[data] == 0) return NONE;
+        int[] list = users[data];
+        return list.length == counts[data] ? list : Arrays.copyOf(list, counts[data]);
+    }
+
+    /**
+     * Shrink the lists of users to their exact size, so {@link #get(int)} returns them without copy
+     */
+    void trim() {
+        for (int data = 0; data < counts.length; data++) {
+            if (users[data] != null && users[data].length != counts[data]) {
+                users[data] = Arrays.copyOf(users[data], counts[data]);
+            }
+        }
+    }
+
+    private void ensureCapacity(int data) {
+        if (data < counts.length) return;
+        int length = Math.max(data + 1, counts.length * 2);
+        users = Arrays.copyOf(users, length);
+        counts = Arrays.copyOf(counts, length);
+    }
+}
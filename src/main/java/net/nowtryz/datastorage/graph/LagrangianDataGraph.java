@@ -0,0 +1,469 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.Data;
+import net.nowtryz.datastorage.entity.DataCatalog;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.knapsack.KnapsackSolver;
+import net.nowtryz.datastorage.util.ArraysUtils;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Graph placing data by solving the whole <i>MKP (Multiple Knapsack Problem)</i> with a Lagrangian relaxation. The
+ * constraints that each data is placed at most once are relaxed with a multiplier per data, which leaves an
+ * independent 0-1 knapsack problem per node: each node picks the data whose score minus multiplier is the best for its
+ * capacity. Multipliers are adjusted by subgradient steps until nodes agree on which data to take.
+ *
+ * <p>Each relaxed solution gives an upper bound of the best possible total score, and is repaired into a valid
+ * placement giving a lower bound. The gap between both bounds tells how far from optimal the placement is.
+ */
+public class LagrangianDataGraph extends AbstractDataGraph {
+    // scores of a data on every node, one buffer per worker thread
+    private static final ThreadLocal<double[]> SCORES = new ThreadLocal<>();
+
+    private KnapsackSolver knapsackSolver = KnapsackSolver.automatic();
+    private ForkJoinPool pool = null;
+    private int candidateCount = 32;
+    private int iterations = 100;
+    private double tolerance = 1e-3;
+    private volatile double upperBound = Double.NaN;
+    private volatile double lowerBound = Double.NaN;
+
+    /**
+     * Create a graph placing data of the {@link DataCatalog#getDefault() default catalog}
+     */
+    public LagrangianDataGraph() {
+        super();
+    }
+
+    /**
+     * Create a graph placing data of the given catalog
+     * @param catalog the catalog holding the data users are interested in
+     */
+    public LagrangianDataGraph(DataCatalog catalog) {
+        super(catalog);
+    }
+
+    /**
+     * Set the solver of the knapsack problem of each node. The upper bound is only valid with an exact solver.
+     * @param knapsackSolver the 0-1 knapsack solver to use
+     */
+    public void setKnapsackSolver(KnapsackSolver knapsackSolver) {
+        this.knapsackSolver = Objects.requireNonNull(knapsackSolver);
+    }
+
+    /**
+     * Set the pool used to solve the knapsack problems of the nodes in parallel
+     * @param pool the pool to run the placement on, or null to place data on the calling thread
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Set on how many nodes each data may be placed: the nodes it scores the most on among those it fits in. Fewer
+     * candidates keep the problem small on large graphs, the relaxation and its upper bound then only cover placements
+     * of data on their candidates.
+     * @param candidateCount the number of candidate nodes of each data, 0 to consider all nodes
+     */
+    public void setCandidateCount(int candidateCount) {
+        if (candidateCount < 0) throw new IllegalArgumentException("The number of candidates must be positive");
+        this.candidateCount = candidateCount;
+    }
+
+    /**
+     * Set when to stop adjusting the multipliers
+     * @param iterations the max number of subgradient steps
+     * @param tolerance the relative gap between the bounds under which the placement is good enough
+     */
+    public void setLimits(int iterations, double tolerance) {
+        if (iterations <= 0 || tolerance < 0) throw new IllegalArgumentException("Limits must be positive");
+        this.iterations = iterations;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Get the lowest upper bound of the total score found by the last placement. No placement of the same data on
+     * their {@link #setCandidateCount(int) candidate nodes} can score more.
+     * @return the upper bound, NaN if no placement ran yet
+     */
+    public double getUpperBound() {
+        return upperBound;
+    }
+
+    /**
+     * Get the total score of the placement kept by the last placement
+     * @return the lower bound, NaN if no placement ran yet
+     */
+    public double getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * Get how far from optimal the last placement may be
+     * @return the gap between the bounds relative to the upper bound, NaN if no placement ran yet
+     */
+    public double getGap() {
+        return upperBound == 0 ? 0 : (upperBound - lowerBound) / upperBound;
+    }
+
+    /**
+     * Place data by solving the Lagrangian relaxation of the MKP. Data already holden by nodes are placed again along
+     * with the given ones.
+     * @param dataList the data to place
+     */
+    protected void placeData(List<Data> dataList) {
+        if (pool == null) this.doPlaceData(dataList, false);
+        // parallel streams run in the pool they are started from
+        else pool.submit(() -> this.doPlaceData(dataList, true)).join();
+    }
+
+    private void doPlaceData(List<Data> dataList, boolean parallel) {
+        final Problem problem = new Problem(dataList, parallel);
+        final Assignment best;
+        try {
+            best = this.solve(problem);
+        } catch (RuntimeException e) {
+            // data already holden left their node when the problem was built, put them back
+            problem.restore();
+            throw e;
+        }
+        problem.apply(best.nodes);
+        if (best.unplaced > 0) throw new NotEnoughSpaceException();
+    }
+
+    private Assignment solve(Problem problem) {
+        final int items = problem.items.length;
+        final double[] multipliers = new double[items];
+        final double[] subgradient = new double[items];
+
+        Assignment best = null;
+        double upper = Double.POSITIVE_INFINITY;
+        double step = 2;
+        int stall = 0;
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            final int[][] selections = problem.solveRelaxed(multipliers);
+
+            // value of the relaxation, an upper bound of any placement
+            double relaxed = Arrays.stream(multipliers).sum();
+            final int[] takers = new int[items];
+            for (int node = 0; node < selections.length; node++) {
+                for (int item : selections[node]) {
+                    relaxed += problem.profit(item, node) - multipliers[item];
+                    takers[item]++;
+                }
+            }
+            if (relaxed < upper) {
+                upper = relaxed;
+                stall = 0;
+            } else if (++stall >= 5) {
+                // the multipliers oscillate, take smaller steps
+                step /= 2;
+                stall = 0;
+            }
+
+            // valid placement derived from the relaxation, a lower bound
+            final Assignment assignment = problem.repair(selections);
+            if (best == null || assignment.unplaced < best.unplaced
+                    || (assignment.unplaced == best.unplaced && assignment.value > best.value)) {
+                best = assignment;
+            }
+            this.getListener().roundCompleted(iteration, items - assignment.unplaced, 0);
+
+            if (best.unplaced == 0 && upper - best.value <= tolerance * Math.abs(upper)) break;
+
+            double norm = 0;
+            for (int item = 0; item < items; item++) {
+                subgradient[item] = 1 - takers[item];
+                norm += subgradient[item] * subgradient[item];
+            }
+            // every data is taken by exactly one node, the relaxed solution is optimal
+            if (norm == 0) break;
+
+            final double length = step * Math.max(relaxed - best.value, 1e-9 * Math.abs(relaxed)) / norm;
+            for (int item = 0; item < items; item++) {
+                multipliers[item] = Math.max(0, multipliers[item] - length * subgradient[item]);
+            }
+        }
+
+        this.upperBound = upper;
+        this.lowerBound = best.value;
+        return best;
+    }
+
+    /**
+     * Placement derived from a relaxed solution
+     */
+    private static class Assignment {
+        // node of each data, -1 for data that don't fit anywhere
+        final int[] nodes;
+        final int unplaced;
+        final double value;
+
+        Assignment(int[] nodes, int unplaced, double value) {
+            this.nodes = nodes;
+            this.unplaced = unplaced;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Scores and sizes of the data to place, shared by all iterations. Only the best nodes of each data are scored and
+     * kept, as sparse rows indexed both by data and by node.
+     */
+    private class Problem {
+        final boolean parallel;
+        final SystemNode[] nodes;
+        final int[] ordinals;
+        final int[] capacities;
+        final Data[] items;
+        final int[] weights;
+        final DistanceOracle distances;
+        // candidate nodes of each data sorted by index, with the score of the data on each of them
+        final int[][] candidates;
+        final double[][] profits;
+        // the same scores by node: the data each node is a candidate for, with their score
+        final int[][] nodeItems;
+        final double[][] nodeProfits;
+        // data taken off each node while the placement runs, with the size the node accounted for them
+        final int[][] held;
+        final int[][] heldSizes;
+
+        Problem(List<Data> dataList, boolean parallel) {
+            this.parallel = parallel;
+            this.nodes = LagrangianDataGraph.this.getSystemNodes().toArray(SystemNode[]::new);
+            this.ordinals = Arrays.stream(nodes).mapToInt(LagrangianDataGraph.this::ordinalOf).toArray();
+            this.items = Stream.concat(
+                    dataList.stream(),
+                    Arrays.stream(nodes).flatMap(node -> Arrays.stream(node.getDataIds()).mapToObj(catalog::get))
+            ).filter(Objects::nonNull).distinct().toArray(Data[]::new);
+
+            // data already holden take part in the placement, they leave their node until the end
+            final BitSet placed = new BitSet();
+            for (Data data : items) placed.set(data.getId());
+            this.held = new int[nodes.length][];
+            this.heldSizes = new int[nodes.length][];
+            for (int n = 0; n < nodes.length; n++) {
+                final SystemNode node = nodes[n];
+                held[n] = Arrays.stream(node.getDataIds()).filter(placed::get).toArray();
+                heldSizes[n] = Arrays.stream(held[n]).map(node::getDataSize).toArray();
+                for (int id : held[n]) node.removeFromStorage(id);
+            }
+
+            this.capacities = Arrays.stream(nodes).mapToInt(SystemNode::getFreeSpace).toArray();
+            this.weights = Arrays.stream(items).mapToInt(Data::getSize).toArray();
+            this.candidates = new int[items.length][];
+            this.profits = new double[items.length][];
+            this.nodeItems = new int[nodes.length][];
+            this.nodeProfits = new double[nodes.length][];
+            try {
+                this.distances = LagrangianDataGraph.this.getDistanceOracle();
+                final int limit = candidateCount == 0 ? nodes.length : Math.min(candidateCount, nodes.length);
+                (parallel ? IntStream.range(0, items.length).parallel() : IntStream.range(0, items.length))
+                        .forEach(i -> this.selectCandidates(i, limit));
+                this.indexByNode();
+            } catch (RuntimeException e) {
+                this.restore();
+                throw e;
+            }
+        }
+
+        /**
+         * Keep the nodes a data scores the most on among those it fits in
+         * @param item the index of the data
+         * @param limit the max number of nodes to keep
+         */
+        private void selectCandidates(int item, int limit) {
+            final double[] scores = ArraysUtils.bufferOf(SCORES, nodes.length);
+            final int[] users = interestedUsers(items[item].getId());
+            computeScores(distances, ordinals, users, weightsOf(items[item].getId(), users), scores);
+
+            // the best nodes are kept by decreasing score while they are collected
+            final int[] best = new int[limit];
+            int count = 0;
+            for (int node = 0; node < nodes.length; node++) {
+                if (!(scores[node] > 0) || weights[item] > capacities[node]) continue;
+                if (limit == nodes.length) {
+                    best[count++] = node;
+                    continue;
+                }
+                if (count == limit && scores[node] <= scores[best[count - 1]]) continue;
+                int position = count < limit ? count++ : count - 1;
+                for (; position > 0 && scores[best[position - 1]] < scores[node]; position--) {
+                    best[position] = best[position - 1];
+                }
+                best[position] = node;
+            }
+
+            final int[] kept = Arrays.copyOf(best, count);
+            Arrays.sort(kept);
+            candidates[item] = kept;
+            profits[item] = Arrays.stream(kept).mapToDouble(node -> scores[node]).toArray();
+        }
+
+        private void indexByNode() {
+            final int[] counts = new int[nodes.length];
+            for (int[] nodesOfItem : candidates) for (int node : nodesOfItem) counts[node]++;
+            for (int node = 0; node < nodes.length; node++) {
+                nodeItems[node] = new int[counts[node]];
+                nodeProfits[node] = new double[counts[node]];
+            }
+            Arrays.fill(counts, 0);
+            for (int item = 0; item < items.length; item++) {
+                for (int c = 0; c < candidates[item].length; c++) {
+                    final int node = candidates[item][c];
+                    nodeItems[node][counts[node]] = item;
+                    nodeProfits[node][counts[node]++] = profits[item][c];
+                }
+            }
+        }
+
+        /**
+         * Get the score of a data on a node
+         * @param item the index of the data
+         * @param node the index of the node
+         * @return the score, computed again if the node is not a candidate of the data
+         */
+        double profit(int item, int node) {
+            final int position = Arrays.binarySearch(candidates[item], node);
+            if (position >= 0) return profits[item][position];
+            final int[] users = interestedUsers(items[item].getId());
+            return computeScores(distances, ordinals[node], users, weightsOf(items[item].getId(), users));
+        }
+
+        /**
+         * Solve the knapsack problem of each node with the profits reduced by the multipliers
+         * @param multipliers the multiplier of each data
+         * @return the data picked by each node
+         */
+        int[][] solveRelaxed(double[] multipliers) {
+            return (parallel ? IntStream.range(0, nodes.length).parallel() : IntStream.range(0, nodes.length))
+                    .mapToObj(node -> this.solveNode(node, multipliers))
+                    .toArray(int[][]::new);
+        }
+
+        private int[] solveNode(int node, double[] multipliers) {
+            // only data that would bring something are worth considering, candidates all fit
+            final int[] itemsOfNode = nodeItems[node];
+            final double[] profitsOfNode = nodeProfits[node];
+            final int[] picked = IntStream.range(0, itemsOfNode.length)
+                    .filter(c -> profitsOfNode[c] > multipliers[itemsOfNode[c]])
+                    .toArray();
+            final int[] candidateWeights = new int[picked.length];
+            final double[] values = new double[picked.length];
+            for (int c = 0; c < picked.length; c++) {
+                candidateWeights[c] = weights[itemsOfNode[picked[c]]];
+                values[c] = profitsOfNode[picked[c]] - multipliers[itemsOfNode[picked[c]]];
+            }
+
+            final long start = System.nanoTime();
+            final BitSet selected = knapsackSolver.solve(candidateWeights, values, capacities[node]);
+            getListener().knapsackSolved(nodes[node], picked.length, System.nanoTime() - start);
+            return selected.stream().map(c -> itemsOfNode[picked[c]]).toArray();
+        }
+
+        /**
+         * Turn a relaxed solution into a placement: data picked by several nodes stay on the one they score the most,
+         * data picked by none go greedily on the best candidate node with enough space left, or on the best node with
+         * enough space left if no candidate has
+         * @param selections the data picked by each node
+         * @return the placement
+         */
+        Assignment repair(int[][] selections) {
+            final int[] assignment = new int[items.length];
+            final double[] values = new double[items.length];
+            Arrays.fill(assignment, -1);
+            for (int node = 0; node < selections.length; node++) {
+                for (int item : selections[node]) {
+                    double profit = this.profit(item, node);
+                    if (assignment[item] < 0 || profit > values[item]) {
+                        assignment[item] = node;
+                        values[item] = profit;
+                    }
+                }
+            }
+
+            final int[] free = capacities.clone();
+            for (int item = 0; item < items.length; item++) {
+                if (assignment[item] >= 0) free[assignment[item]] -= weights[item];
+            }
+
+            // the most profitable data per size unit first
+            final Integer[] left = IntStream.range(0, items.length)
+                    .filter(item -> assignment[item] < 0)
+                    .boxed()
+                    .sorted(Comparator.comparingDouble(item -> -this.bestProfit(item) / Math.max(1, weights[item])))
+                    .toArray(Integer[]::new);
+            int unplaced = 0;
+            for (int item : left) {
+                int best = -1;
+                for (int c = 0; c < candidates[item].length; c++) {
+                    boolean fits = free[candidates[item][c]] >= weights[item];
+                    if (fits && (best < 0 || profits[item][c] > values[item])) {
+                        best = candidates[item][c];
+                        values[item] = profits[item][c];
+                    }
+                }
+                if (best < 0) best = this.bestFittingNode(item, free, values);
+                if (best < 0) {
+                    unplaced++;
+                    continue;
+                }
+                assignment[item] = best;
+                free[best] -= weights[item];
+            }
+            return new Assignment(assignment, unplaced, Arrays.stream(values).sum());
+        }
+
+        /**
+         * Find the node a data scores the most on among all nodes having enough space left, for data fitting none of
+         * their candidates
+         * @param item the index of the data
+         * @param free the space left on each node
+         * @param values the array receiving the score of the data on the found node
+         * @return the index of the node, -1 if the data fits nowhere
+         */
+        private int bestFittingNode(int item, int[] free, double[] values) {
+            final double[] scores = ArraysUtils.bufferOf(SCORES, nodes.length);
+            final int[] users = interestedUsers(items[item].getId());
+            computeScores(distances, ordinals, users, weightsOf(items[item].getId(), users), scores);
+            int best = -1;
+            for (int node = 0; node < nodes.length; node++) {
+                if (free[node] >= weights[item] && (best < 0 || scores[node] > scores[best])) best = node;
+            }
+            if (best >= 0) values[item] = scores[best];
+            return best;
+        }
+
+        private double bestProfit(int item) {
+            return Arrays.stream(profits[item]).max().orElse(0);
+        }
+
+        /**
+         * Store data on the nodes of a placement
+         * @param assignment the node of each data
+         */
+        void apply(int[] assignment) {
+            for (int item = 0; item < items.length; item++) {
+                if (assignment[item] >= 0) nodes[assignment[item]].addToStorage(items[item]);
+            }
+        }
+
+        /**
+         * Put the data taken off the nodes back where they were
+         */
+        void restore() {
+            for (int node = 0; node < nodes.length; node++) {
+                for (int i = 0; i < held[node].length; i++) nodes[node].addToStorage(held[node][i], heldSizes[node][i]);
+            }
+        }
+    }
+}
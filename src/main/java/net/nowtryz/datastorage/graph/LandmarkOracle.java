@@ -0,0 +1,88 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.util.IndexedMinHeap;
+
+import java.util.Arrays;
+
+/**
+ * Approximate distances computed from landmarks (ALT). A few system nodes are chosen as landmarks, spread with a
+ * farthest-point selection, and their distance to every vertex is precomputed. By the triangle inequality, the distance
+ * between a user <i>u</i> and a node <i>n</i> is then bounded by
+ * <pre>max d(l, u) - d(l, n) &le; d(u, n) &le; min d(l, u) + d(l, n)</pre>
+ * Users cannot relay data, so the path from a landmark to a node never goes through <i>u</i> and the distance from a
+ * landmark to a node does not bound the distance from the user.
+ * The upper bound is returned when it is within the error bound of the lower bound, so the relative error never exceeds
+ * the bound. Otherwise the exact distance is read from a {@link DistanceMatrix}.
+ */
+public class LandmarkOracle implements DistanceOracle {
+    private final int landmarks;
+    private final double errorBound;
+    private final double[] userDistances;
+    private final double[] nodeDistances;
+    private final DistanceMatrix exact;
+
+    /**
+     * Precompute the distances of the landmarks
+     * @param graph the frozen graph
+     * @param landmarks the number of landmarks, at most the number of system nodes. Unused node ordinals are never
+     *                  landmarks
+     * @param errorBound the max relative error of a distance, {@link Double#POSITIVE_INFINITY} to never fall back on
+     *                   exact distances
+     * @param exact the exact distances, used as fallback
+     */
+    public LandmarkOracle(CompactGraph graph, int landmarks, double errorBound, DistanceMatrix exact) {
+        if (landmarks <= 0) throw new IllegalArgumentException("At least one landmark is needed");
+        this.landmarks = landmarks = Math.min(landmarks, Math.max(1, graph.liveNodeCount()));
+        this.errorBound = errorBound;
+        this.exact = exact;
+        // landmarks that could not be chosen are unreachable, so they never bound a distance
+        this.userDistances = new double[graph.userCount() * landmarks];
+        this.nodeDistances = new double[graph.nodeCount() * landmarks];
+        Arrays.fill(userDistances, Double.POSITIVE_INFINITY);
+        Arrays.fill(nodeDistances, Double.POSITIVE_INFINITY);
+
+        final IndexedMinHeap heap = new IndexedMinHeap(graph.vertexCount());
+        final double[] distances = new double[graph.vertexCount()];
+        // distance from each vertex to the closest landmark chosen so far
+        final double[] closest = new double[graph.nodeCount()];
+        Arrays.fill(closest, Double.POSITIVE_INFINITY);
+
+        int landmark = graph.nextNode(0);
+        for (int l = 0; l < landmarks && landmark >= 0; l++) {
+            double[] toNodes = graph.distancesToNodes(graph.nodeVertex(landmark), heap, distances);
+            for (int u = 0; u < graph.userCount(); u++) {
+                userDistances[u * landmarks + l] = distances[graph.userVertex(u)];
+            }
+            for (int n = 0; n < graph.nodeCount(); n++) {
+                nodeDistances[n * landmarks + l] = toNodes[n];
+                closest[n] = Math.min(closest[n], toNodes[n]);
+            }
+
+            // next landmark: the node the farthest from all landmarks, unreached components first
+            for (int n = graph.nextNode(0); n >= 0; n = graph.nextNode(n + 1)) {
+                if (closest[n] > closest[landmark]) landmark = n;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double get(int user, int node) {
+        double lower = 0;
+        double upper = Double.POSITIVE_INFINITY;
+        int u = user * landmarks;
+        int n = node * landmarks;
+        for (int l = 0; l < landmarks; l++) {
+            double fromUser = userDistances[u + l];
+            double fromNode = nodeDistances[n + l];
+            if (fromUser == Double.POSITIVE_INFINITY || fromNode == Double.POSITIVE_INFINITY) continue;
+            lower = Math.max(lower, fromUser - fromNode);
+            upper = Math.min(upper, fromUser + fromNode);
+        }
+
+        if (upper <= lower * (1 + errorBound) || errorBound == Double.POSITIVE_INFINITY) return upper;
+        return exact.get(user, node);
+    }
+}
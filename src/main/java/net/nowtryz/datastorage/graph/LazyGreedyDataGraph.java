@@ -0,0 +1,149 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.Data;
+import net.nowtryz.datastorage.entity.DataCatalog;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.util.ArraysUtils;
+import net.nowtryz.datastorage.util.IndexedMinHeap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Graph placing data greedily, the data bringing the most score per unit of size first, each on its best node that
+ * still has enough space. This is the lazy greedy (<i>CELF</i>) scheme: every data sits in a priority queue keyed by an
+ * upper bound of its gain, and its gain is only computed when it reaches the top of the queue. The score of a data on
+ * a node does not depend on what the node holds, so a data whose best node can still hold it when it reaches the top
+ * again is the best move left. Its gain is computed again only if that node has been filled up in the meantime.
+ *
+ * <p>The bound of a data sums, over its interested users, the score they would get from their nearest node, which is
+ * read from their own links since users cannot relay data. No score is kept besides the gain of the data in the queue.
+ *
+ * <p>Data are sorted by id before being queued, so the placement does not depend on the order data are given in. The
+ * placement runs on the calling thread.
+ */
+public class LazyGreedyDataGraph extends AbstractDataGraph {
+    // scores of the data being evaluated on every node
+    private static final ThreadLocal<double[]> SCORES = new ThreadLocal<>();
+
+    private long evaluations = 0;
+
+    /**
+     * Create a graph placing data of the {@link DataCatalog#getDefault() default catalog}
+     */
+    public LazyGreedyDataGraph() {
+        super();
+    }
+
+    /**
+     * Create a graph placing data of the given catalog
+     * @param catalog the catalog holding the data users are interested in
+     */
+    public LazyGreedyDataGraph(DataCatalog catalog) {
+        super(catalog);
+    }
+
+    /**
+     * Get the number of gains computed during the last placement: once for each data reaching the top of the queue,
+     * and once more each time its best node was filled up before it could be placed there
+     * @return the number of evaluations
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Place the given data in the free space left on nodes, the most profitable data per size unit first.
+     * @param dataList the data to place
+     */
+    protected void placeData(List<Data> dataList) {
+        final SystemNode[] nodes = this.getSystemNodes().toArray(SystemNode[]::new);
+        final Data[] items = dataList.stream().sorted(Comparator.comparingInt(Data::getId)).toArray(Data[]::new);
+        final Candidates candidates = new Candidates(nodes, items);
+        evaluations = 0;
+
+        int placed = 0;
+        while (!candidates.queue.isEmpty()) {
+            final int item = candidates.queue.poll();
+            final int node = candidates.node[item];
+            // the gain is exact and the node can still hold the data, nothing left can do better
+            if (node >= 0 && nodes[node].hasEnoughSpace(items[item].getSize())) {
+                nodes[node].addToStorage(items[item]);
+                placed++;
+            } else {
+                evaluations++;
+                candidates.evaluate(item);
+            }
+        }
+
+        this.getListener().roundCompleted(0, placed, 0);
+        if (placed < items.length) throw new NotEnoughSpaceException();
+    }
+
+    /**
+     * Priority queue of the data to place, keyed by the bound of their gain until it is computed
+     */
+    private class Candidates {
+        final SystemNode[] nodes;
+        final Data[] items;
+        final int[] ordinals;
+        final DistanceOracle distances;
+        // data are keyed by their opposite gain per size unit, the min heap gives the best gain first
+        final IndexedMinHeap queue;
+        // best node of each data when its gain was computed, -1 while only its bound is known
+        final int[] node;
+
+        Candidates(SystemNode[] nodes, Data[] items) {
+            this.nodes = nodes;
+            this.items = items;
+            this.ordinals = Arrays.stream(nodes).mapToInt(LazyGreedyDataGraph.this::ordinalOf).toArray();
+            this.distances = LazyGreedyDataGraph.this.getDistanceOracle();
+            this.queue = new IndexedMinHeap(items.length);
+            this.node = new int[items.length];
+            Arrays.fill(node, -1);
+
+            // score each user would get from its nearest node, no node can bring it more
+            final CompactGraph graph = LazyGreedyDataGraph.this.freeze();
+            final double[] nearest = new double[graph.userCount()];
+            for (int user = 0; user < nearest.length; user++) {
+                final int vertex = graph.userVertex(user);
+                double distance = Double.POSITIVE_INFINITY;
+                for (int link = graph.firstLink(vertex); link < graph.endLink(vertex); link++) {
+                    distance = Math.min(distance, graph.weight(link));
+                }
+                nearest[user] = 1 / (distance * distance);
+            }
+
+            for (int item = 0; item < items.length; item++) {
+                final int id = items[item].getId();
+                final int[] users = interestedUsers(id);
+                final double[] weights = weightsOf(id, users);
+                double bound = 0;
+                for (int u = 0; u < users.length; u++) bound += (weights == null ? 1 : weights[u]) * nearest[users[u]];
+                queue.offer(item, -bound / Math.max(1, items[item].getSize()));
+            }
+        }
+
+        /**
+         * Compute the gain of a data on the best node that can still hold it and queue it again
+         * @param item the index of the data
+         */
+        void evaluate(int item) {
+            final double[] scores = ArraysUtils.bufferOf(SCORES, nodes.length);
+            final int[] users = interestedUsers(items[item].getId());
+            computeScores(distances, ordinals, users, weightsOf(items[item].getId(), users), scores);
+
+            int best = -1;
+            for (int n = 0; n < nodes.length; n++) {
+                boolean fits = nodes[n].hasEnoughSpace(items[item].getSize());
+                if (fits && (best < 0 || scores[n] > scores[best])) best = n;
+            }
+
+            // no node can hold the data anymore
+            if (best < 0) return;
+            node[item] = best;
+            queue.offer(item, -scores[best] / Math.max(1, items[item].getSize()));
+        }
+    }
+}
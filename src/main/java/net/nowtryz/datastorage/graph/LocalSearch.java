@@ -0,0 +1,440 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.Data;
+import net.nowtryz.datastorage.entity.SystemNode;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Improvement of a placement by simulated annealing over the assignment of data to nodes. Two neighborhoods are
+ * explored: moving a data to another node with enough free space, and swapping two data of different nodes. A move is
+ * evaluated in O(interested users) from the cached distances. Moves lowering the score are accepted with a probability
+ * that decreases as the time budget runs out, to escape local optima.
+ *
+ * <p>Data that could not be placed take part in the search with a penalty greater than any placement score, so making
+ * room for them prevails over everything else. This repairs placements failing for lack of space when moving other
+ * data would free enough.
+ *
+ * <p>Several searches run in parallel with independent seeds and the best placement found is applied to the graph.
+ * Only data held by a single node are moved, copies of replicated data stay where they are. A user linked to a node
+ * with a link of weight 0 counts as if it was at the shortest positive link weight of the graph, so that its score is
+ * finite and moves can still be compared.
+ */
+public class LocalSearch {
+    private final long budget;
+    private int threads = 1;
+    private long seed = 0;
+    private double temperature = .05;
+    private ForkJoinPool pool = null;
+
+    /**
+     * Create a local search running for the given time
+     * @param budget the duration of the search
+     * @param unit the unit of the duration
+     */
+    public LocalSearch(long budget, TimeUnit unit) {
+        if (budget < 0) throw new IllegalArgumentException("The budget must be positive");
+        this.budget = unit.toNanos(budget);
+    }
+
+    /**
+     * Set the number of searches to run in parallel, each on its own thread with its own seed
+     * @param threads the number of searches
+     * @return this local search
+     */
+    public LocalSearch threads(int threads) {
+        if (threads <= 0) throw new IllegalArgumentException("At least one thread is needed");
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Set the seed of the first search, the following searches use the next seeds
+     * @param seed the seed
+     * @return this local search
+     */
+    public LocalSearch seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Set the initial temperature of the annealing, relative to the mean score of a data. 0 only accepts moves that
+     * improve the score.
+     * @param temperature the initial temperature
+     * @return this local search
+     */
+    public LocalSearch temperature(double temperature) {
+        if (temperature < 0) throw new IllegalArgumentException("The temperature must be positive");
+        this.temperature = temperature;
+        return this;
+    }
+
+    /**
+     * Set the pool running parallel searches. Without one, the local search creates its own pool on first use and
+     * keeps it for all the following searches.
+     * @param pool the pool, it should have a worker for each of the {@link #threads(int) searches}
+     * @return this local search
+     */
+    public LocalSearch pool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Improve the current placement of a graph
+     * @param graph the placed graph
+     * @return the outcome of the search
+     */
+    public Result improve(AbstractDataGraph graph) {
+        return this.improve(graph, new Data[0]);
+    }
+
+    /**
+     * Improve the current placement of a graph and try to place the given data
+     * @param graph the placed graph
+     * @param unplaced data that could not be placed, not held by any node
+     * @return the outcome of the search, with the data still not placed
+     */
+    public Result improve(AbstractDataGraph graph, Collection<Data> unplaced) {
+        return this.improve(graph, unplaced.toArray(new Data[0]));
+    }
+
+    private Result improve(AbstractDataGraph graph, Data[] unplaced) {
+        final Problem problem = new Problem(graph, unplaced);
+        if (problem.items == 0 || problem.nodes.length == 0) {
+            double score = problem.score(problem.initial);
+            return new Result(score, score, 0, problem.unplaced(problem.initial));
+        }
+
+        final Search[] searches;
+        if (threads == 1) searches = new Search[]{new Search(problem, seed).run(budget, temperature)};
+        else {
+            final ForkJoinPool pool = this.getPool();
+            // one task per search, the pool should have a worker for each of them
+            List<ForkJoinTask<Search>> tasks = IntStream.range(0, threads)
+                    .mapToObj(i -> pool.submit(() -> new Search(problem, seed + i).run(budget, temperature)))
+                    .collect(Collectors.toList());
+            searches = tasks.stream().map(ForkJoinTask::join).toArray(Search[]::new);
+        }
+
+        final Search best = Arrays.stream(searches).max(Comparator.comparingDouble(s -> s.bestScore)).get();
+        final long iterations = Arrays.stream(searches).mapToLong(s -> s.iterations).sum();
+        final double initialScore = problem.score(problem.initial);
+        problem.apply(best.best);
+        return new Result(initialScore, problem.score(best.best), iterations, problem.unplaced(best.best));
+    }
+
+    private synchronized ForkJoinPool getPool() {
+        // workers are daemon threads that end after a while without task, the pool never needs to be shut down
+        if (pool == null) pool = new ForkJoinPool(threads);
+        return pool;
+    }
+
+    /**
+     * Outcome of a local search
+     */
+    public static class Result {
+        private final double initialScore;
+        private final double score;
+        private final long iterations;
+        private final List<Data> unplaced;
+
+        Result(double initialScore, double score, long iterations, List<Data> unplaced) {
+            this.initialScore = initialScore;
+            this.score = score;
+            this.iterations = iterations;
+            this.unplaced = unplaced;
+        }
+
+        /**
+         * Get the score of the placement before the search
+         * @return the sum of the scores of placed data
+         */
+        public double getInitialScore() {
+            return initialScore;
+        }
+
+        /**
+         * Get the score of the placement after the search
+         * @return the sum of the scores of placed data
+         */
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * Get the number of moves evaluated by all searches
+         * @return the number of iterations
+         */
+        public long getIterations() {
+            return iterations;
+        }
+
+        /**
+         * Get the data that are still not placed
+         * @return the unplaced data, empty if all data found a node
+         */
+        public List<Data> getUnplaced() {
+            return unplaced;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Result(initialScore=%.4f, score=%.4f, iterations=%d, unplaced=%d)",
+                    initialScore, score, iterations, unplaced.size());
+        }
+    }
+
+    /**
+     * Read-only description of the assignment problem, shared by all searches
+     */
+    private static class Problem {
+        final AbstractDataGraph graph;
+        final DistanceMatrix distances;
+        final SystemNode[] nodes;
+        final int[] ordinals;
+        final int[] free;
+        final Data[] data;
+        final int[] sizes;
+        final int[][] users;
+        // weight of each interested user of a data, null if they all weigh 1
+        final double[][] weights;
+        final int[] initial;
+        final int items;
+        // score of a data that is not placed, lower than any placement could compensate
+        final double penalty;
+        // shortest positive distance, users at distance 0 are scored at this distance to keep scores finite
+        final double minDistance;
+
+        Problem(AbstractDataGraph graph, Data[] unplaced) {
+            this.graph = graph;
+            this.distances = graph.getDistances();
+            this.nodes = graph.getSystemNodes().toArray(SystemNode[]::new);
+            this.ordinals = Arrays.stream(nodes).mapToInt(graph::ordinalOf).toArray();
+            this.free = Arrays.stream(nodes).mapToInt(node -> node.getCapacity() - node.getUsedSpace()).toArray();
+
+            // data of the catalog held by a single node can move, the others stay where they are
+            int[] holders = new int[graph.getCatalog().size()];
+            int[] holder = new int[holders.length];
+            for (int n = 0; n < nodes.length; n++) {
+                final int node = n;
+                nodes[n].forEachData(id -> {
+                    // ids beyond the catalog, such as streamed data, can't move
+                    if (id >= holders.length) return;
+                    holders[id]++;
+                    holder[id] = node;
+                });
+            }
+
+            final int[] movable = IntStream.range(0, holders.length)
+                    .filter(id -> holders[id] == 1 && graph.getCatalog().get(id) != null)
+                    .toArray();
+            this.items = movable.length + unplaced.length;
+            this.data = new Data[items];
+            this.sizes = new int[items];
+            this.users = new int[items][];
+            this.weights = new double[items][];
+            this.initial = new int[items];
+
+            for (int i = 0; i < items; i++) {
+                data[i] = i < movable.length ? graph.getCatalog().get(movable[i]) : unplaced[i - movable.length];
+                sizes[i] = data[i].getSize();
+                users[i] = graph.interestedUsers(data[i].getId());
+                weights[i] = graph.weightsOf(data[i].getId(), users[i]);
+                initial[i] = i < movable.length ? holder[movable[i]] : -1;
+            }
+
+            final CompactGraph compact = graph.freeze();
+            double shortest = Double.POSITIVE_INFINITY;
+            for (int link = 0; compact.vertexCount() > 0 && link < compact.endLink(compact.vertexCount() - 1); link++) {
+                if (compact.weight(link) > 0) shortest = Math.min(shortest, compact.weight(link));
+            }
+            this.minDistance = shortest == Double.POSITIVE_INFINITY ? 1 : shortest;
+
+            // no data can score more than its users would get from their nearest node
+            final double[] nearest = new double[distances.userCount()];
+            Arrays.fill(nearest, Double.NaN);
+            double bound = 1;
+            for (int i = 0; i < items; i++) {
+                for (int u = 0; u < users[i].length; u++) {
+                    final int user = users[i][u];
+                    if (Double.isNaN(nearest[user])) {
+                        double[] row = distances.row(user);
+                        double min = Arrays.stream(ordinals).mapToDouble(o -> row[o]).min().orElse(0);
+                        nearest[user] = Math.max(min, minDistance);
+                    }
+                    bound += (weights[i] == null ? 1 : weights[i][u]) / (nearest[user] * nearest[user]);
+                }
+            }
+            this.penalty = bound;
+        }
+
+        /**
+         * Score of a data on a node
+         * @param item the index of the data
+         * @param node the index of the node, -1 if the data is not placed
+         * @return the score
+         */
+        double value(int item, int node) {
+            if (node < 0) return -penalty;
+            final int ordinal = ordinals[node];
+            final int[] interested = users[item];
+            final double[] factors = weights[item];
+            double score = 0;
+            for (int u = 0; u < interested.length; u++) {
+                double d = Math.max(distances.row(interested[u])[ordinal], minDistance);
+                score += (factors == null ? 1 : factors[u]) / (d * d);
+            }
+            return score;
+        }
+
+        /**
+         * Score of an assignment
+         * @param assignment the node of each data
+         * @return the sum of the scores of placed data
+         */
+        double score(int[] assignment) {
+            return IntStream.range(0, items)
+                    .filter(i -> assignment[i] >= 0)
+                    .mapToDouble(i -> this.value(i, assignment[i]))
+                    .sum();
+        }
+
+        /**
+         * Data left out of an assignment
+         * @param assignment the node of each data
+         * @return the data that are not placed
+         */
+        List<Data> unplaced(int[] assignment) {
+            return IntStream.range(0, items)
+                    .filter(i -> assignment[i] < 0)
+                    .mapToObj(i -> data[i])
+                    .collect(Collectors.toList());
+        }
+
+        /**
+         * Move data of the graph to their node in the given assignment
+         * @param assignment the node of each data
+         */
+        void apply(int[] assignment) {
+            for (int i = 0; i < items; i++) {
+                if (assignment[i] == initial[i]) continue;
+                if (initial[i] >= 0) nodes[initial[i]].removeFromStorage(data[i].getId());
+            }
+            for (int i = 0; i < items; i++) {
+                if (assignment[i] == initial[i]) continue;
+                if (assignment[i] >= 0) nodes[assignment[i]].addToStorage(data[i]);
+            }
+        }
+    }
+
+    /**
+     * Simulated annealing run by a single thread on its own copy of the assignment
+     */
+    private static class Search {
+        final Problem problem;
+        final Random random;
+        final int[] assignment;
+        final int[] free;
+        final double[] values;
+        int[] best;
+        double score;
+        double bestScore;
+        long iterations;
+
+        Search(Problem problem, long seed) {
+            this.problem = problem;
+            this.random = new Random(seed);
+            this.assignment = problem.initial.clone();
+            this.free = problem.free.clone();
+            this.values = new double[problem.items];
+            for (int i = 0; i < problem.items; i++) {
+                values[i] = problem.value(i, assignment[i]);
+                score += values[i];
+            }
+            this.best = assignment.clone();
+            this.bestScore = score;
+        }
+
+        Search run(long budget, double temperature) {
+            final long start = System.nanoTime();
+            final long placed = Arrays.stream(assignment).filter(node -> node >= 0).count();
+            final double mean = placed == 0 ? 1 : Arrays.stream(values).filter(v -> v > 0).sum() / placed;
+            final double initialTemperature = temperature * mean;
+            double current = initialTemperature;
+
+            while (true) {
+                // the clock is only read from time to time
+                if ((iterations & 1023) == 0) {
+                    double progress = (double) (System.nanoTime() - start) / budget;
+                    if (progress >= 1) break;
+                    current = initialTemperature * Math.pow(1e-3, progress);
+                }
+                iterations++;
+
+                final int item = random.nextInt(problem.items);
+                if (random.nextBoolean()) this.tryMove(item, random.nextInt(problem.nodes.length), current);
+                else this.trySwap(item, random.nextInt(problem.items), current);
+            }
+            return this;
+        }
+
+        private void tryMove(int item, int node, double temperature) {
+            if (assignment[item] == node || free[node] < problem.sizes[item]) return;
+
+            final double value = problem.value(item, node);
+            if (!this.accept(value - values[item], temperature)) return;
+
+            if (assignment[item] >= 0) free[assignment[item]] += problem.sizes[item];
+            free[node] -= problem.sizes[item];
+            this.assign(item, node, value);
+            this.keepIfBest();
+        }
+
+        private void trySwap(int item, int other, double temperature) {
+            final int from = assignment[item];
+            final int to = assignment[other];
+            if (from == to || to < 0) return;
+            // the node of each data must have room for the other once it has left
+            if (free[to] + problem.sizes[other] < problem.sizes[item]) return;
+            if (from >= 0 && free[from] + problem.sizes[item] < problem.sizes[other]) return;
+
+            final double itemValue = problem.value(item, to);
+            final double otherValue = problem.value(other, from);
+            if (!this.accept(itemValue + otherValue - values[item] - values[other], temperature)) return;
+
+            free[to] += problem.sizes[other] - problem.sizes[item];
+            if (from >= 0) free[from] += problem.sizes[item] - problem.sizes[other];
+            this.assign(item, to, itemValue);
+            this.assign(other, from, otherValue);
+            this.keepIfBest();
+        }
+
+        private boolean accept(double delta, double temperature) {
+            return delta >= 0 || (temperature > 0 && random.nextDouble() < Math.exp(delta / temperature));
+        }
+
+        private void assign(int item, int node, double value) {
+            score += value - values[item];
+            values[item] = value;
+            assignment[item] = node;
+        }
+
+        private void keepIfBest() {
+            if (score > bestScore) {
+                bestScore = score;
+                best = assignment.clone();
+            }
+        }
+    }
+}
@@ -1,39 +1,46 @@
 package net.nowtryz.datastorage.graph;
 
 import net.nowtryz.datastorage.entity.Data;
-import net.nowtryz.datastorage.entity.Node;
+import net.nowtryz.datastorage.entity.DataCatalog;
 import net.nowtryz.datastorage.entity.SystemNode;
 import net.nowtryz.datastorage.entity.User;
-import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
-import org.jgrapht.graph.DefaultWeightedEdge;
-import org.jgrapht.traverse.ClosestFirstIterator;
 
-import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
-
-import static net.nowtryz.datastorage.util.ArraysUtils.arrayContains;
+import java.util.stream.IntStream;
 
 public class MakeshiftDataGraph extends AbstractDataGraph {
+    // one search per thread, replaced when the thread searches another frozen graph
+    private static final ThreadLocal<NearestNodeSearch> SEARCHES = new ThreadLocal<>();
 
     /**
-     * Collect all data users of the graph are interested in and place them and the right position in order to let it be
-     * the closest possible of all interested users.<br>
-     * This method does not care of the <i>MKP (Multiple Knapsack Problem)</i>
+     * Create a graph placing data of the {@link DataCatalog#getDefault() default catalog}
      */
-    public void placeData() {
-        // get a user stream to manipulate users of the graph
-        User[] users = this.getUsers();
+    public MakeshiftDataGraph() {
+        super();
+    }
 
-        // retrieve data of each user
-        this.getData(users)
-                // for each data, get interested users and call placeData for the specific data
-                .forEach(data -> this.placeSpecificData(data, Arrays.stream(users)
-                        .filter(user -> arrayContains(user.getInterests(), data.getId()))
-                        .toArray(User[]::new)
-                ));
+    /**
+     * Create a graph placing data of the given catalog
+     * @param catalog the catalog holding the data users are interested in
+     */
+    public MakeshiftDataGraph(DataCatalog catalog) {
+        super(catalog);
+    }
+
+    /**
+     * Place the given data at the right position in order to let them be the closest possible of all interested
+     * users.<br>
+     * This method does not care of the <i>MKP (Multiple Knapsack Problem)</i>
+     * @param dataList the data to place
+     */
+    protected void placeData(List<Data> dataList) {
+        // for each data, get interested users and call placeData for the specific data
+        dataList.forEach(data -> this.placeSpecificData(data, this.interestedUsers(data.getId())));
     }
 
     /**
@@ -41,44 +48,62 @@ public class MakeshiftDataGraph extends AbstractDataGraph {
      * @param user the user from which to take interests
      */
     public void placeUserData(User user) {
-        ClosestFirstIterator<Node, DefaultWeightedEdge> iterator = new ClosestFirstIterator<>(this, user);
-        SystemNode node = null;
-        for (Data data: Arrays.stream(user.getInterests()).mapToObj(Data::getFromId).collect(Collectors.toList())) {
-            while (iterator.hasNext() && (node == null || !node.hasEnoughSpace(data.getSize()))) {
-                node = nextSystemNode(iterator);
+        final NearestNodeSearch search = this.nearestNodeSearch();
+        final int ordinal = this.ordinalOf(user);
+        final int[] found = new int[1];
+        final int[] size = new int[1];
+        // find the closest node that can still hold the data being placed
+        final IntPredicate fits = node -> this.systemNodeAt(node).hasEnoughSpace(size[0]);
+
+        for (int id : user.getInterests()) {
+            Data data = catalog.get(id);
+            size[0] = data.getSize();
+            if (search.search(ordinal, 1, Double.POSITIVE_INFINITY, fits, found, null) == 0) {
+                throw new NotEnoughSpaceException();
             }
-            if (node == null) throw new RuntimeException("There isn't enough space");
-            node.addToStorage(data.getId());
+            this.systemNodeAt(found[0]).addToStorage(data);
         }
     }
 
+    private NearestNodeSearch nearestNodeSearch() {
+        final CompactGraph graph = this.freeze();
+        NearestNodeSearch search = SEARCHES.get();
+        if (search == null || search.getGraph() != graph) SEARCHES.set(search = new NearestNodeSearch(graph));
+        return search;
+    }
+
     /**
      * Place a specific data, the nearest possible of all given users. To place the data, we will give a score to
      * each node, which is obtained by computing the quadratic mean of distances from all interested users to the node
      * they are placed in and we take the lowest score node.
      * This method does not care of the <i>MKP (Multiple Knapsack Problem)</i>
      * @param data the data to place
-     * @param users users that are interested in the data
+     * @param users ordinals of the users that are interested in the data
      */
-    private void placeSpecificData(Data data, User[] users) {
+    private void placeSpecificData(Data data, int[] users) {
+        final DistanceOracle distances = this.getDistanceOracle();
+        final double[] weights = this.weightsOf(data.getId(), users);
         final Map<SystemNode, Double> scores = this.getSystemNodes()
                 // only keep system nodes that have enough space to receive the data
                 .filter(x -> x.hasEnoughSpace(data.getSize()))
                 // get the score of each nodes based on the sum of edges' weight from each user
-                .collect(Collectors.toMap(x -> x, x -> Arrays
-                        .stream(users)
-                        .mapToDouble(u -> DijkstraShortestPath.findPathBetween(this, u, x).getWeight())
-                        .map(d -> d * d)
-                        .sum()
-                ));
+                .collect(Collectors.toMap(x -> x, x -> {
+                    int node = this.ordinalOf(x);
+                    return IntStream.range(0, users.length)
+                            .mapToDouble(u -> {
+                                double d = distances.get(users[u], node);
+                                return (weights == null ? 1 : weights[u]) * d * d;
+                            })
+                            .sum();
+                }));
 
         // find the node with the best score
         final Optional<SystemNode> bestNode = scores.keySet().stream().min(Comparator.comparingDouble(scores::get));
 
         // throw an error if there's no such node
-        if (!bestNode.isPresent()) throw new RuntimeException("There isn't enough space");
+        if (!bestNode.isPresent()) throw new NotEnoughSpaceException();
 
         // add the data to the best node
-        bestNode.get().addToStorage(data.getId());
+        bestNode.get().addToStorage(data);
     }
 }
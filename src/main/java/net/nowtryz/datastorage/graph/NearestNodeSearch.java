@@ -0,0 +1,112 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.util.IndexedMinHeap;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Bounded Dijkstra search for the system nodes closest to a user or to a batch of users. The search stops as soon as
+ * the requested number of accepted nodes are settled or the radius is exceeded, and never goes through other users
+ * since users cannot relay data.
+ *
+ * <p>Buffers are allocated once for the whole graph and only the visited vertices are reset between searches, so a
+ * search allocates nothing. An instance must not be used by several threads at once.
+ */
+public class NearestNodeSearch {
+    private final CompactGraph graph;
+    private final IndexedMinHeap heap;
+    private final double[] distances;
+    private final int[] visited;
+    private int visitedCount = 0;
+
+    /**
+     * Prepare searches on a frozen graph
+     * @param graph the graph to search
+     */
+    public NearestNodeSearch(CompactGraph graph) {
+        this.graph = graph;
+        this.heap = new IndexedMinHeap(graph.vertexCount());
+        this.distances = new double[graph.vertexCount()];
+        this.visited = new int[graph.vertexCount()];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Get the graph this search runs on
+     * @return the frozen graph
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Find the accepted system nodes closest to a user
+     * @param user the ordinal of the user
+     * @param k the max number of nodes to find
+     * @param radius the max distance of the nodes
+     * @param accept the predicate on node ordinals selecting the nodes to report
+     * @param nodes the array receiving the ordinals of found nodes, by increasing distance
+     * @param nodeDistances the array receiving the distance of found nodes, may be null
+     * @return the number of found nodes
+     */
+    public int search(int user, int k, double radius, IntPredicate accept, int[] nodes, double[] nodeDistances) {
+        this.reach(graph.userVertex(user), 0);
+        return this.run(k, radius, accept, nodes, nodeDistances);
+    }
+
+    /**
+     * Find the accepted system nodes closest to any user of a batch
+     * @param users the ordinals of the users
+     * @param k the max number of nodes to find
+     * @param radius the max distance of the nodes
+     * @param accept the predicate on node ordinals selecting the nodes to report
+     * @param nodes the array receiving the ordinals of found nodes, by increasing distance
+     * @param nodeDistances the array receiving the distance of found nodes, may be null
+     * @return the number of found nodes
+     */
+    public int search(int[] users, int k, double radius, IntPredicate accept, int[] nodes, double[] nodeDistances) {
+        for (int user : users) this.reach(graph.userVertex(user), 0);
+        return this.run(k, radius, accept, nodes, nodeDistances);
+    }
+
+    private int run(int k, double radius, IntPredicate accept, int[] nodes, double[] nodeDistances) {
+        int found = 0;
+        while (found < k && !heap.isEmpty() && heap.peekKey() <= radius) {
+            int vertex = heap.poll();
+            double distance = distances[vertex];
+
+            if (!graph.isUser(vertex)) {
+                int ordinal = graph.nodeOrdinal(vertex);
+                if (accept.test(ordinal)) {
+                    nodes[found] = ordinal;
+                    if (nodeDistances != null) nodeDistances[found] = distance;
+                    found++;
+                }
+            }
+
+            // only sources can be users, other users are never reached since they cannot relay
+            for (int link = graph.firstLink(vertex); link < graph.endLink(vertex); link++) {
+                int target = graph.target(link);
+                if (graph.isUser(target)) continue;
+                this.reach(target, distance + graph.weight(link));
+            }
+        }
+
+        this.reset();
+        return found;
+    }
+
+    private void reach(int vertex, double distance) {
+        if (distance >= distances[vertex]) return;
+        if (distances[vertex] == Double.POSITIVE_INFINITY) visited[visitedCount++] = vertex;
+        distances[vertex] = distance;
+        heap.offer(vertex, distance);
+    }
+
+    private void reset() {
+        for (int i = 0; i < visitedCount; i++) distances[visited[i]] = Double.POSITIVE_INFINITY;
+        visitedCount = 0;
+        heap.clear();
+    }
+}
@@ -0,0 +1,13 @@
+package net.nowtryz.datastorage.graph;
+
+/**
+ * Thrown by placements when some data don't fit on any node
+ */
+public class NotEnoughSpaceException extends RuntimeException {
+    /**
+     * Create the exception
+     */
+    public NotEnoughSpaceException() {
+        super("There isn't enough space");
+    }
+}
@@ -1,166 +1,187 @@
 package net.nowtryz.datastorage.graph;
 
 import net.nowtryz.datastorage.entity.Data;
+import net.nowtryz.datastorage.entity.DataCatalog;
 import net.nowtryz.datastorage.entity.SystemNode;
-import net.nowtryz.datastorage.entity.User;
+import net.nowtryz.datastorage.knapsack.KnapsackSolver;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-import static net.nowtryz.datastorage.util.ArraysUtils.arrayContains;
+import static net.nowtryz.datastorage.util.ArraysUtils.bufferOf;
+import static net.nowtryz.datastorage.util.ArraysUtils.indexOfMax;
 
 public class OptimizedDataGraph extends AbstractDataGraph {
+    // scores of a data on the remaining nodes, one buffer per worker thread
+    private static final ThreadLocal<double[]> SCORES = new ThreadLocal<>();
+
+    private KnapsackSolver knapsackSolver = KnapsackSolver.automatic();
+    private ForkJoinPool pool = null;
+    private ReplicationPolicy replicationPolicy = null;
+    private LocalSearch improvement = null;
+
+    /**
+     * Create a graph placing data of the {@link DataCatalog#getDefault() default catalog}
+     */
+    public OptimizedDataGraph() {
+        super();
+    }
+
+    /**
+     * Create a graph placing data of the given catalog
+     * @param catalog the catalog holding the data users are interested in
+     */
+    public OptimizedDataGraph(DataCatalog catalog) {
+        super(catalog);
+    }
+
+    /**
+     * Set the solver used to find the best arrangement of overweight nodes
+     * @param knapsackSolver the 0-1 knapsack solver to use
+     */
+    public void setKnapsackSolver(KnapsackSolver knapsackSolver) {
+        this.knapsackSolver = Objects.requireNonNull(knapsackSolver);
+    }
+
+    /**
+     * Set the pool used to place data in parallel. Scoring of data and knapsack repair of overweight nodes are then
+     * spread over the threads of the pool.
+     * @param pool the pool to run the placement on, or null to place data on the calling thread
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Set the number of copies of each data to place. Each user then reads the copy the nearest to it.
+     * @param replicationPolicy the number of copies of each data, or null to place a single copy
+     * @see ReplicatedPlacement
+     */
+    public void setReplicationPolicy(ReplicationPolicy replicationPolicy) {
+        this.replicationPolicy = replicationPolicy;
+    }
+
+    /**
+     * Set the search run once data are placed to improve their placement. The search also tries to place data that
+     * didn't find any node before giving up for lack of space. Only applies to placements of a single copy.
+     * @param improvement the local search to run, or null to keep the placement as it is
+     */
+    public void setImprovement(LocalSearch improvement) {
+        this.improvement = improvement;
+    }
 
     /**
      * To fill the graph with data, having a MKP sight, all data will be processed and temporary  put on the "perfect"
      * node, then the algorithm will keep the best arrangement for each node and loop until no collection is
-     * overweight.
+     * overweight. Data already holden by nodes take part in the arrangement of the nodes they are on.
+     * @param dataList the data to place
      */
-    public void placeData() {
-        // get a user stream to manipulate users of the graph
-        User[] users = this.getUsers();
+    protected void placeData(List<Data> dataList) {
+        if (pool == null) this.doPlaceData(dataList, false);
+        // parallel streams run in the pool they are started from
+        else pool.submit(() -> this.doPlaceData(dataList, true)).join();
+    }
+
+    private void doPlaceData(List<Data> dataList, boolean parallel) {
+        if (replicationPolicy != null) {
+            new ReplicatedPlacement(this, replicationPolicy, knapsackSolver, parallel).place(dataList);
+            return;
+        }
+
         List<SystemNode> nodes = this.getSystemNodes().collect(Collectors.toList());
-        // retrieve data of each user
-        List<Data> dataList = this.getData(users);
+        // compute the distances once, before workers start reading them
+        this.getDistanceOracle();
+        int round = 0;
 
         do {
-            List<SystemNode> remainingNodes = new ArrayList<>(nodes);
-            dataList
+            int placed = dataList.size();
+            SystemNode[] remainingNodes = nodes.toArray(new SystemNode[0]);
+            int[] ordinals = Arrays.stream(remainingNodes).mapToInt(this::ordinalOf).toArray();
+            (parallel ? dataList.parallelStream() : dataList.stream())
                     // for each data, get interested users and call placeData for the specific data
-                    .forEach(data -> this.putOnBestSpot(data, remainingNodes, Arrays.stream(users)
-                            .filter(user -> arrayContains(user.getInterests(), data.getId()))
-                            .toArray(User[]::new)
-                    ));
+                    .forEach(data -> {
+                        int[] users = this.interestedUsers(data.getId());
+                        this.putOnBestSpot(data, remainingNodes, ordinals, users);
+                    });
 
-            // store invalid positioned data to position the in the next loop insertion
-            dataList = remainingNodes.stream()
-                    // retrieve overweight nodes
+            // retrieve overweight nodes and remove them from accessible nodes
+            List<SystemNode> overweightNodes = Arrays.stream(remainingNodes)
                     .filter(SystemNode::isOverweight)
-                    // remove theme from accessible nodes
-                    .peek(nodes::remove)
+                    .collect(Collectors.toList());
+            nodes.removeAll(overweightNodes);
+
+            // store invalid positioned data to position the in the next loop insertion
+            dataList = (parallel ? overweightNodes.parallelStream() : overweightNodes.stream())
                     // find the best arrangement for each node and get excess data
                     .flatMap(this::removeInvalidData)
                     // collect them and put them in the datalist for next iteration
                     .collect(Collectors.toList());
+            this.getListener().roundCompleted(round++, placed, overweightNodes.size());
 
             // we can quit the loop if all data are place or if there isn't enough place
         } while (dataList.size() > 0 && nodes.size() > 0);
 
-        if (dataList.size() > 0) throw new RuntimeException("There isn't enough space");
+        // moving placed data may free enough space for the data left
+        if (improvement != null) dataList = improvement.improve(this, dataList).getUnplaced();
+        if (dataList.size() > 0) throw new NotEnoughSpaceException();
     }
 
     /**
      * Find the best node to put a data, without taking care of the max weight
      * @param data the data to place
      * @param nodes the available nodes
-     * @param users the users interested in the data
+     * @param ordinals the ordinals of the available nodes
+     * @param users the ordinals of the users interested in the data
      */
-    private void putOnBestSpot(Data data, List<SystemNode> nodes, User[] users) {
-        final Map<SystemNode, Double> scores = nodes.stream()
-                // get the score of each nodes based on the sum of edges' weight from each user
-                .collect(Collectors.toMap(x -> x, x -> this.computeScores(x, users)
-                ));
+    private void putOnBestSpot(Data data, SystemNode[] nodes, int[] ordinals, int[] users) {
+        // get the score of each nodes based on the sum of edges' weight from each user
+        final double[] scores = bufferOf(SCORES, nodes.length);
+        this.computeScores(this.getDistanceOracle(), ordinals, users, this.weightsOf(data.getId(), users), scores);
 
         // find the node with the best score
-        final Optional<SystemNode> bestNode = scores.keySet().stream().max(Comparator.comparingDouble(scores::get));
+        final int best = indexOfMax(scores, nodes.length);
 
         // throw an error if there's no such node
-        if (!bestNode.isPresent()) throw new RuntimeException("There isn't enough space");
+        if (best < 0) throw new NotEnoughSpaceException();
 
         // add the data to the best node
-        bestNode.get().addToStorage(data.getId());
+        nodes[best].addToStorage(data);
     }
 
     /**
-     * O-1 Knapsack recursion using dynamic programming to find the best arrangement
+     * Solve the 0-1 knapsack problem of the given node to find the best arrangement. Data missing from the catalog,
+     * such as data placed by a {@link StreamingPlacement}, stay on the node and only take their space.
      * @param node the "knapsack" to consider
      * @return invalid data that need to be place elsewhere
      */
     private Stream<Data> removeInvalidData(SystemNode node) {
-        final Map<Integer, Double> scores = node.getData()
-                .stream()
-                .filter(Objects::nonNull)
-                .map(Data::getFromId)
-                .collect(Collectors.toMap(Data::getId, x -> this.computeScores(node, Arrays
-                        .stream(this.getUsers())
-                        .filter(user -> arrayContains(user.getInterests(), x.getId()))
-                        .toArray(User[]::new)
-                )));
-
-        Selection result = new KnapSack(scores, new LinkedHashSet<>(node.getData()), node.getCapacity()).startCompute();
-
-        return node.getData()
-                .stream()
-                .filter(x -> !result.selected.contains(x))
-                .peek(node::removeFromStorage)
-                .map(Data::getFromId);
-
-
-    }
-
-    private static class KnapSack {
-        Map<Integer, Double> scores;
-        Map<Integer, Integer> weights;
-        Set<Integer> ids;
-        int maxWeight;
-
-        public KnapSack(Map<Integer, Double> scores, Set<Integer> data, int maxWeight) {
-            this.ids = data;
-            this.scores = scores;
-            this.maxWeight = maxWeight;
-            this.weights = data.stream()
-                    .map(Data::getFromId)
-                    .collect(Collectors.toMap(Data::getId, Data::getSize));
+        final DistanceMatrix distances = this.getDistances();
+        final int ordinal = this.ordinalOf(node);
+        final int[] ids = Arrays.stream(node.getDataIds()).filter(id -> catalog.get(id) != null).toArray();
+        final int[] weights = new int[ids.length];
+        final double[] values = new double[ids.length];
+        int capacity = node.getCapacity() - node.getUsedSpace();
+
+        for (int i = 0; i < weights.length; i++) {
+            final Data data = catalog.get(ids[i]);
+            weights[i] = data.getSize();
+            capacity += node.getDataSize(ids[i]);
+            final int[] users = this.interestedUsers(data.getId());
+            values[i] = this.computeScores(distances, ordinal, users, this.weightsOf(data.getId(), users));
         }
 
-        public Selection startCompute() {
-            return this.compute(0, new LinkedHashSet<>());
-        }
+        final long start = System.nanoTime();
+        final BitSet selected = this.knapsackSolver.solve(weights, values, Math.max(0, capacity));
+        this.getListener().knapsackSolved(node, ids.length, System.nanoTime() - start);
+        this.getListener().dataEvicted(node, ids.length - selected.cardinality());
 
-        public Selection compute(int pos, Set<Integer> selected) {
-            DoubleAdder totalValue = new DoubleAdder();
-            AtomicInteger totalWeight = new AtomicInteger();
-            selected.forEach(x -> {
-                totalValue.add(scores.get(x));
-                totalWeight.addAndGet(weights.get(x));
-            });
-
-            /*
-             *  Base cases
-             */
-            // overweight
-            if (totalWeight.get() > maxWeight) return new Selection(null, 0, 0);
-
-            // end of recursion
-            if (pos >= ids.size()) {
-                return new Selection(selected, totalValue.doubleValue(), totalWeight.get());
-            }
-
-            /*
-             * Recursive case
-             */
-            final LinkedHashSet<Integer> taken = new LinkedHashSet<>(selected);
-            taken.add(pos);
-            Selection on  = this.compute(pos + 1, taken);
-            Selection off = this.compute(pos + 1, selected);
-
-            if (on.totalValue > off.totalValue) return on;
-            else return off;
-        }
-    }
-
-    private static class Selection {
-        Set<Integer> selected;
-        double totalValue;
-        int totalWeight;
-
-        public Selection(Set<Integer> selected, double totalValue, int totalWeight) {
-            this.selected = selected;
-            this.totalValue = totalValue;
-            this.totalWeight = totalWeight;
-        }
+        return IntStream.range(0, weights.length)
+                .filter(i -> !selected.get(i))
+                .map(i -> ids[i])
+                .peek(node::removeFromStorage)
+                .mapToObj(catalog::get);
     }
 }
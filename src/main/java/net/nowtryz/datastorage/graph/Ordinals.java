@@ -0,0 +1,89 @@
+package net.nowtryz.datastorage.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assign dense ordinals to the vertices of a graph so they can be used as indexes in primitive arrays. Ordinals are
+ * stable as long as the vertex stays in the graph, the ordinal of a removed vertex is reused by the next added one.
+ * @param <T> the type of the indexed vertices
+ */
+class Ordinals<T> {
+    private final Map<T, Integer> ordinals = new IdentityHashMap<>();
+    private final List<T> values = new ArrayList<>();
+    private int[] free = new int[8];
+    private int freeCount = 0;
+
+    /**
+     * Assign an ordinal to the given value
+     * @param value the value to index
+     * @return the ordinal of the value
+     */
+    int add(T value) {
+        Integer existing = ordinals.get(value);
+        if (existing != null) return existing;
+
+        int ordinal;
+        if (freeCount > 0) {
+            ordinal = free[--freeCount];
+            values.set(ordinal, value);
+        } else {
+            ordinal = values.size();
+            values.add(value);
+        }
+        ordinals.put(value, ordinal);
+        return ordinal;
+    }
+
+    /**
+     * Release the ordinal of the given value
+     * @param value the value to remove
+     * @return the released ordinal or -1 if the value wasn't indexed
+     */
+    int remove(T value) {
+        Integer ordinal = ordinals.remove(value);
+        if (ordinal == null) return -1;
+        values.set(ordinal, null);
+        if (freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+        free[freeCount++] = ordinal;
+        return ordinal;
+    }
+
+    /**
+     * Get the ordinal of the given value
+     * @param value the indexed value
+     * @return its ordinal or -1 if the value isn't indexed
+     */
+    int of(T value) {
+        Integer ordinal = ordinals.get(value);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Get the value having the given ordinal
+     * @param ordinal the ordinal to look for
+     * @return the value or null if the ordinal is not in use
+     */
+    T get(int ordinal) {
+        return values.get(ordinal);
+    }
+
+    /**
+     * Get the upper bound (exclusive) of the ordinals in use
+     * @return the length needed by an array indexed by these ordinals
+     */
+    int capacity() {
+        return values.size();
+    }
+
+    /**
+     * Get the number of indexed values
+     * @return the number of indexed values
+     */
+    int size() {
+        return ordinals.size();
+    }
+}
@@ -0,0 +1,215 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.Data;
+import net.nowtryz.datastorage.entity.DataCatalog;
+import net.nowtryz.datastorage.entity.Node;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import net.nowtryz.datastorage.util.ArraysUtils;
+import net.nowtryz.datastorage.util.IntIntHashMap;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Graph split in regions that are placed independently. A {@link GraphPartitioner} cuts the graph where links are the
+ * weakest, then each region gets its own graph holding its users, its nodes and the links between them, and places the
+ * data its users are the most interested in with another strategy. Regions are placed in parallel, and each one only
+ * computes distances between its own users and nodes.
+ *
+ * <p>A data whose users are spread over several regions is placed by the region holding most of them, ignoring the
+ * others. A reconciliation pass then moves such data to the node with the best score for all their users, computing
+ * distances of these users on the whole graph, and places the data that did not fit in their region.
+ */
+public class PartitionedDataGraph extends AbstractDataGraph {
+    private Function<DataCatalog, ? extends AbstractDataGraph> strategy = OptimizedDataGraph::new;
+    private GraphPartitioner partitioner = new GraphPartitioner(4);
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private CompactGraph partitioned = null;
+    private int[] regions = null;
+
+    /**
+     * Create a graph placing data of the {@link DataCatalog#getDefault() default catalog}
+     */
+    public PartitionedDataGraph() {
+        super();
+    }
+
+    /**
+     * Create a graph placing data of the given catalog
+     * @param catalog the catalog holding the data users are interested in
+     */
+    public PartitionedDataGraph(DataCatalog catalog) {
+        super(catalog);
+    }
+
+    /**
+     * Set the strategy placing data inside each region
+     * @param strategy the constructor of the graph of a region, from the catalog of this graph
+     */
+    public void setStrategy(Function<DataCatalog, ? extends AbstractDataGraph> strategy) {
+        this.strategy = Objects.requireNonNull(strategy);
+    }
+
+    /**
+     * Set the partitioner splitting the graph in regions
+     * @param partitioner the partitioner
+     */
+    public void setPartitioner(GraphPartitioner partitioner) {
+        this.partitioner = Objects.requireNonNull(partitioner);
+        this.regions = null;
+    }
+
+    /**
+     * Set the pool regions are placed in
+     * @param pool the pool to run the placement of regions on
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = Objects.requireNonNull(pool);
+    }
+
+    /**
+     * Get the region of a user or a system node, the graph is split again if its topology changed
+     * @param node a user or a system node of this graph
+     * @return the region of the node
+     */
+    public int getRegion(Node node) {
+        final CompactGraph graph = this.freeze();
+        final int[] regions = this.partition(graph);
+        if (node instanceof User) return regions[graph.userVertex(this.ordinalOf((User) node))];
+        return regions[graph.nodeVertex(this.ordinalOf((SystemNode) node))];
+    }
+
+    /**
+     * Place data region by region, then reconcile data of users from several regions
+     * @param dataList the data to place
+     */
+    protected void placeData(List<Data> dataList) {
+        final CompactGraph graph = this.freeze();
+        final int[] regions = this.partition(graph);
+        final int parts = partitioner.getParts();
+
+        // each data is placed by the region holding most of its users
+        final List<List<Data>> owned = new ArrayList<>(parts);
+        for (int r = 0; r < parts; r++) owned.add(new ArrayList<>());
+        final List<Data> boundary = new ArrayList<>();
+        final int[] counts = new int[parts];
+        for (Data data : dataList) {
+            Arrays.fill(counts, 0);
+            for (int user : this.interestedUsers(data.getId())) counts[regions[graph.userVertex(user)]]++;
+            int owner = 0, spread = 0;
+            for (int r = 0; r < parts; r++) {
+                if (counts[r] > counts[owner]) owner = r;
+                if (counts[r] > 0) spread++;
+            }
+            owned.get(owner).add(data);
+            if (spread > 1) boundary.add(data);
+        }
+
+        pool.submit(() -> IntStream.range(0, parts).parallel()
+                .forEach(r -> this.placeRegion(graph, regions, r, owned.get(r)))
+        ).join();
+
+        this.reconcile(dataList, boundary);
+    }
+
+    /**
+     * Split the graph, or reuse the last partition if the topology did not change since
+     */
+    private synchronized int[] partition(CompactGraph graph) {
+        if (regions == null || partitioned != graph) {
+            final int[] weights = new int[graph.vertexCount()];
+            for (int v = 0; v < weights.length; v++) {
+                // unused ordinals don't count in the balance of regions
+                Node node = graph.isUser(v) ? this.userAt(v) : this.systemNodeAt(graph.nodeOrdinal(v));
+                weights[v] = node == null ? 0 : 1;
+            }
+            regions = partitioner.partition(graph, weights);
+            partitioned = graph;
+        }
+        return regions;
+    }
+
+    /**
+     * Build the graph of a region and place its data
+     */
+    private void placeRegion(CompactGraph graph, int[] regions, int region, List<Data> dataList) {
+        if (dataList.isEmpty()) return;
+        final AbstractDataGraph subGraph = strategy.apply(catalog);
+        subGraph.setListener(this.getListener());
+
+        final List<Node> vertices = new ArrayList<>();
+        for (int v = 0; v < regions.length; v++) {
+            if (regions[v] != region) continue;
+            Node node = graph.isUser(v) ? this.userAt(v) : this.systemNodeAt(graph.nodeOrdinal(v));
+            if (node != null) vertices.add(node);
+        }
+        vertices.forEach(subGraph::addVertex);
+        for (Node vertex : vertices) {
+            for (DefaultWeightedEdge edge : this.edgesOf(vertex)) {
+                // links are undirected, add each one from its source only
+                Node target = this.getEdgeTarget(edge);
+                if (this.getEdgeSource(edge) == vertex && subGraph.containsVertex(target)) {
+                    subGraph.addEdge(vertex, target, this.getEdgeWeight(edge));
+                }
+            }
+        }
+
+        try {
+            subGraph.placeData(dataList);
+        } catch (NotEnoughSpaceException e) {
+            // the region is full, data left are placed by the reconciliation
+        }
+    }
+
+    /**
+     * Move data of users from several regions to their best node on the whole graph, and place the data that did not
+     * fit in their region
+     */
+    private void reconcile(List<Data> dataList, List<Data> boundary) {
+        final SystemNode[] nodes = this.getSystemNodes().toArray(SystemNode[]::new);
+        final IntIntHashMap holders = new IntIntHashMap(dataList.size());
+        for (int n = 0; n < nodes.length; n++) {
+            final int node = n;
+            nodes[n].forEachData(id -> holders.put(id, node, -1));
+        }
+
+        final List<Data> pending = new ArrayList<>(boundary);
+        dataList.stream().filter(data -> !holders.containsKey(data.getId())).forEach(pending::add);
+        // data without any node first, then the biggest ones while there is room left
+        pending.sort(Comparator.<Data>comparingInt(data -> holders.containsKey(data.getId()) ? 1 : 0)
+                .thenComparing(Comparator.comparingInt(Data::getSize).reversed())
+                .thenComparingInt(Data::getId));
+
+        final DistanceOracle distances = this.getDistanceOracle();
+        int unplaced = 0;
+        for (Data data : pending) {
+            int holder = holders.remove(data.getId(), -1);
+            if (holder >= 0) nodes[holder].removeFromStorage(data.getId());
+
+            final int[] candidates = IntStream.range(0, nodes.length)
+                    .filter(n -> nodes[n].hasEnoughSpace(data.getSize()))
+                    .toArray();
+            if (candidates.length == 0) {
+                unplaced++;
+                continue;
+            }
+            final int[] ordinals = Arrays.stream(candidates).map(n -> this.ordinalOf(nodes[n])).toArray();
+            final double[] scores = new double[candidates.length];
+            final int[] users = this.interestedUsers(data.getId());
+            this.computeScores(distances, ordinals, users, this.weightsOf(data.getId(), users), scores);
+            final int best = candidates[ArraysUtils.indexOfMax(scores)];
+            nodes[best].addToStorage(data);
+            holders.put(data.getId(), best, -1);
+        }
+
+        if (unplaced > 0) throw new NotEnoughSpaceException();
+    }
+}
@@ -0,0 +1,365 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.util.IntSet;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable copy of where data are stored, taken at the end of a placement. Placements work on the system nodes of the
+ * graph directly: nodes are modified in place and may hold more than their capacity in the middle of a placement.
+ * Readers that only go through the placement published last, which never changes, don't need any lock and never see a
+ * placement half done. This isolation only covers the copy: the nodes it refers to are the live ones, so their own
+ * storage should not be read in place of {@link #getData(SystemNode)} or {@link #getUsedSpace(SystemNode)}.
+ *
+ * <p>A placement is taken from the previous one: only the nodes whose storage changed since are read again, the
+ * others share their copy with the previous placement, and only the holders of the data they gained or lost are
+ * updated. Publishing the result of an incremental update costs as much as the nodes it touched.
+ *
+ * @see AbstractDataGraph#getPlacement()
+ */
+public class Placement {
+    // holders are split in pages of data ids, so a placement only copies the pages of the data that moved
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int[] NONE = new int[0];
+    private static final Placement EMPTY = new Placement(0, new SystemNode[0], new int[0][], new int[0][], new int[0],
+            new int[0], new int[0][][]);
+
+    private final long version;
+    private final SystemNode[] nodes;
+    private final Map<SystemNode, Integer> ordinals;
+    // sorted data ids of each node, by node ordinal, along with their size
+    private final int[][] data;
+    private final int[][] sizes;
+    private final int[] usedSpace;
+    // modification counts of the nodes when they were read
+    private final int[] modifications;
+    // node ordinals holding each data, holders[id >> PAGE_BITS][id & PAGE_SIZE - 1], null for none
+    private final int[][][] holders;
+
+    private Placement(long version, SystemNode[] nodes, int[][] data, int[][] sizes, int[] usedSpace,
+                      int[] modifications, int[][][] holders) {
+        this.version = version;
+        this.nodes = nodes;
+        this.ordinals = new IdentityHashMap<>(nodes.length);
+        this.data = data;
+        this.sizes = sizes;
+        this.usedSpace = usedSpace;
+        this.modifications = modifications;
+        this.holders = holders;
+        for (int ordinal = 0; ordinal < nodes.length; ordinal++) {
+            if (nodes[ordinal] != null) ordinals.put(nodes[ordinal], ordinal);
+        }
+    }
+
+    /**
+     * Take a placement of the current state of the given graph's nodes. Must not run while data are being placed.
+     * @param graph the graph
+     * @param version the version of the placement
+     * @return the placement
+     */
+    static Placement of(AbstractDataGraph graph, long version) {
+        return EMPTY.next(graph, version);
+    }
+
+    /**
+     * Get an empty placement, for graphs on which no data has been placed yet
+     * @return a placement with no node
+     */
+    static Placement empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Take a placement of the current state of the given graph's nodes, reading again only the nodes that changed
+     * since this placement was taken. Must not run while data are being placed.
+     * @param graph the graph
+     * @param version the version of the new placement
+     * @return the new placement
+     */
+    Placement next(AbstractDataGraph graph, long version) {
+        final int count = graph.nodeOrdinalCount();
+        final SystemNode[] nextNodes = new SystemNode[count];
+        final int[][] nextData = new int[count][];
+        final int[][] nextSizes = new int[count][];
+        final int[] nextUsedSpace = new int[count];
+        final int[] nextModifications = new int[count];
+        final Holders nextHolders = new Holders(holders);
+
+        for (int ordinal = 0; ordinal < Math.max(count, nodes.length); ordinal++) {
+            final SystemNode node = ordinal < count ? graph.systemNodeAt(ordinal) : null;
+            final boolean known = ordinal < nodes.length && nodes[ordinal] != null;
+            if (node != null && known && nodes[ordinal] == node
+                    && node.getModificationCount() == modifications[ordinal]) {
+                nextNodes[ordinal] = node;
+                nextData[ordinal] = data[ordinal];
+                nextSizes[ordinal] = sizes[ordinal];
+                nextUsedSpace[ordinal] = usedSpace[ordinal];
+                nextModifications[ordinal] = modifications[ordinal];
+                continue;
+            }
+
+            int[] previous = known ? data[ordinal] : NONE;
+            int[] current = NONE;
+            if (node != null) synchronized (node) {
+                current = node.getDataIds();
+                Arrays.sort(current);
+                final int[] currentSizes = new int[current.length];
+                for (int i = 0; i < current.length; i++) currentSizes[i] = node.getDataSize(current[i]);
+                nextNodes[ordinal] = node;
+                nextData[ordinal] = current;
+                nextSizes[ordinal] = currentSizes;
+                nextUsedSpace[ordinal] = node.getUsedSpace();
+                nextModifications[ordinal] = node.getModificationCount();
+            }
+            // a node replaced by another one on the same ordinal loses all its data
+            if (known && nodes[ordinal] != node) {
+                for (int id : previous) nextHolders.remove(id, ordinal);
+                previous = NONE;
+            }
+            for (int id : previous) if (Arrays.binarySearch(current, id) < 0) nextHolders.remove(id, ordinal);
+            for (int id : current) if (Arrays.binarySearch(previous, id) < 0) nextHolders.add(id, ordinal);
+        }
+
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            if (nextData[ordinal] == null) {
+                nextData[ordinal] = NONE;
+                nextSizes[ordinal] = NONE;
+            }
+        }
+        return new Placement(version, nextNodes, nextData, nextSizes, nextUsedSpace, nextModifications,
+                nextHolders.pages);
+    }
+
+    /**
+     * Check whether this placement still matches the nodes of the graph, which happens as long as no node changed
+     * since it was taken
+     * @param graph the graph
+     * @return true if every node of the graph holds what this placement says it holds
+     */
+    boolean isCurrent(AbstractDataGraph graph) {
+        if (graph.nodeOrdinalCount() != nodes.length) return false;
+        for (int ordinal = 0; ordinal < nodes.length; ordinal++) {
+            final SystemNode node = graph.systemNodeAt(ordinal);
+            if (node != nodes[ordinal]) return false;
+            if (node != null && node.getModificationCount() != modifications[ordinal]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the node having the given ordinal changed since this placement was taken
+     * @param ordinal the ordinal of the node
+     * @return true if the storage of the node changed
+     */
+    boolean hasChanged(int ordinal) {
+        return nodes[ordinal] != null && nodes[ordinal].getModificationCount() != modifications[ordinal];
+    }
+
+    /**
+     * Get the version of this placement, incremented at each placement of the graph
+     * @return the number of placements published before this one
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the system nodes of the graph when this placement was taken. The nodes are the live nodes of the graph, read
+     * what they held at that time with {@link #getData(SystemNode)}.
+     * @return the nodes
+     */
+    public List<SystemNode> getNodes() {
+        return Arrays.asList(Arrays.stream(nodes).filter(Objects::nonNull).toArray(SystemNode[]::new));
+    }
+
+    /**
+     * Get the data held by a node
+     * @param node the system node
+     * @return the ids of the data, empty if the node wasn't part of the graph
+     */
+    public IntSet getData(SystemNode node) {
+        Integer ordinal = ordinals.get(node);
+        return new SortedIds(ordinal == null ? NONE : data[ordinal]);
+    }
+
+    /**
+     * Get the space used on a node
+     * @param node the system node
+     * @return the total size of the data held by the node, 0 if the node wasn't part of the graph
+     */
+    public int getUsedSpace(SystemNode node) {
+        Integer ordinal = ordinals.get(node);
+        return ordinal == null ? 0 : usedSpace[ordinal];
+    }
+
+    /**
+     * Get the nodes holding a copy of a data
+     * @param dataId the id of the data
+     * @return the holders, empty if no node holds the data
+     */
+    public List<SystemNode> getHolders(int dataId) {
+        final int[] held = this.holders(dataId);
+        return new AbstractList<SystemNode>() {
+            @Override
+            public SystemNode get(int index) {
+                if (index < 0 || index >= held.length) throw new IndexOutOfBoundsException(Integer.toString(index));
+                return nodes[held[index]];
+            }
+
+            @Override
+            public int size() {
+                return held.length;
+            }
+        };
+    }
+
+    /**
+     * Get the holders of a data
+     * @param dataId the id of the data
+     * @return the ordinals of the nodes holding the data, must not be modified
+     */
+    int[] holders(int dataId) {
+        if (dataId < 0 || dataId >> PAGE_BITS >= holders.length) return NONE;
+        final int[][] page = holders[dataId >> PAGE_BITS];
+        final int[] ordinals = page == null ? null : page[dataId & PAGE_SIZE - 1];
+        return ordinals == null ? NONE : ordinals;
+    }
+
+    /**
+     * Get the node having the given ordinal in this placement
+     * @param ordinal the ordinal of the node
+     * @return the node
+     */
+    SystemNode nodeAt(int ordinal) {
+        return nodes[ordinal];
+    }
+
+    /**
+     * Get the data held by the node having the given ordinal in this placement
+     * @param ordinal the ordinal of the node
+     * @return the sorted ids of the data, must not be modified
+     */
+    int[] dataAt(int ordinal) {
+        return data[ordinal];
+    }
+
+    /**
+     * Get the size the node having the given ordinal accounted for its data
+     * @param ordinal the ordinal of the node
+     * @return the sizes of the data, indexed like {@link #dataAt(int)}, must not be modified
+     */
+    int[] sizesAt(int ordinal) {
+        return sizes[ordinal];
+    }
+
+    /**
+     * Get the upper bound (exclusive) of the node ordinals of this placement
+     * @return the number of node slots
+     */
+    int nodeOrdinalCount() {
+        return nodes.length;
+    }
+
+    @Override
+    public String toString() {
+        long stored = Arrays.stream(data).mapToLong(ids -> ids.length).sum();
+        return "Placement(version=" + version + ", nodes=" + ordinals.size() + ", data=" + stored + ')';
+    }
+
+    /**
+     * Copy on write of the holders of a previous placement: pages and holder arrays are copied the first time they
+     * change, the others are shared
+     */
+    private static class Holders {
+        int[][][] pages;
+        private final BitSet copied = new BitSet();
+        private boolean resized = false;
+
+        Holders(int[][][] pages) {
+            this.pages = pages;
+        }
+
+        void add(int id, int ordinal) {
+            // ids out of any catalog can't be looked up
+            if (id < 0) return;
+            final int[] current = this.get(id);
+            final int[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = ordinal;
+            Arrays.sort(updated);
+            this.set(id, updated);
+        }
+
+        void remove(int id, int ordinal) {
+            if (id < 0) return;
+            final int[] current = this.get(id);
+            final int[] updated = Arrays.stream(current).filter(holder -> holder != ordinal).toArray();
+            this.set(id, updated.length == 0 ? null : updated);
+        }
+
+        private int[] get(int id) {
+            final int page = id >> PAGE_BITS;
+            if (page >= pages.length || pages[page] == null) return NONE;
+            final int[] ordinals = pages[page][id & PAGE_SIZE - 1];
+            return ordinals == null ? NONE : ordinals;
+        }
+
+        private void set(int id, int[] ordinals) {
+            final int page = id >> PAGE_BITS;
+            if (!resized || page >= pages.length) {
+                pages = Arrays.copyOf(pages, Math.max(pages.length, page + 1));
+                resized = true;
+            }
+            if (!copied.get(page)) {
+                pages[page] = pages[page] == null ? new int[PAGE_SIZE][] : pages[page].clone();
+                copied.set(page);
+            }
+            pages[page][id & PAGE_SIZE - 1] = ordinals;
+        }
+    }
+
+    /**
+     * Sorted data ids of a node
+     */
+    private static class SortedIds implements IntSet {
+        private final int[] ids;
+
+        SortedIds(int[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+
+        @Override
+        public boolean contains(int value) {
+            return Arrays.binarySearch(ids, value) >= 0;
+        }
+
+        @Override
+        public void forEach(IntConsumer action) {
+            for (int id : ids) action.accept(id);
+        }
+
+        @Override
+        public int[] toArray() {
+            return ids.clone();
+        }
+
+        @Override
+        public IntStream stream() {
+            return Arrays.stream(ids);
+        }
+    }
+}
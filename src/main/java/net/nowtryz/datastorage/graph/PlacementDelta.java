@@ -0,0 +1,142 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.SystemNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes of the placement of data resulting from an incremental update of a graph
+ */
+public class PlacementDelta {
+    private final List<Move> moves;
+
+    private PlacementDelta(List<Move> moves) {
+        this.moves = Collections.unmodifiableList(moves);
+    }
+
+    /**
+     * Compute the moves between two placements of a graph. Nodes whose content is shared by both placements did not
+     * change and are skipped, so the cost only depends on the nodes that changed.
+     * @param before the placement before the update
+     * @param after the placement after the update, taken from {@code before}
+     * @return the delta
+     */
+    static PlacementDelta between(Placement before, Placement after) {
+        // removed and added copies of each data, by data id
+        Map<Integer, List<SystemNode>> sources = new LinkedHashMap<>();
+        Map<Integer, List<SystemNode>> targets = new LinkedHashMap<>();
+
+        for (int ordinal = 0; ordinal < Math.max(before.nodeOrdinalCount(), after.nodeOrdinalCount()); ordinal++) {
+            SystemNode previousNode = ordinal < before.nodeOrdinalCount() ? before.nodeAt(ordinal) : null;
+            SystemNode currentNode = ordinal < after.nodeOrdinalCount() ? after.nodeAt(ordinal) : null;
+            int[] previous = previousNode == null ? new int[0] : before.dataAt(ordinal);
+            int[] current = currentNode == null ? new int[0] : after.dataAt(ordinal);
+            if (previousNode == currentNode && previous == current) continue;
+
+            // both arrays are sorted
+            for (int id : previous) {
+                if (previousNode != currentNode || Arrays.binarySearch(current, id) < 0) {
+                    sources.computeIfAbsent(id, k -> new ArrayList<>()).add(previousNode);
+                }
+            }
+            for (int id : current) {
+                if (previousNode != currentNode || Arrays.binarySearch(previous, id) < 0) {
+                    targets.computeIfAbsent(id, k -> new ArrayList<>()).add(currentNode);
+                }
+            }
+        }
+
+        List<Move> moves = new ArrayList<>();
+        sources.forEach((id, from) -> {
+            List<SystemNode> to = targets.getOrDefault(id, Collections.emptyList());
+            for (int i = 0; i < Math.max(from.size(), to.size()); i++) {
+                moves.add(new Move(id, i < from.size() ? from.get(i) : null, i < to.size() ? to.get(i) : null));
+            }
+        });
+        targets.forEach((id, to) -> {
+            if (sources.containsKey(id)) return;
+            for (SystemNode node : to) moves.add(new Move(id, null, node));
+        });
+
+        return new PlacementDelta(moves);
+    }
+
+    /**
+     * Get the moves of this delta
+     * @return an unmodifiable list of moves
+     */
+    public List<Move> getMoves() {
+        return moves;
+    }
+
+    /**
+     * Check whether the update left the placement unchanged
+     * @return true if no data moved
+     */
+    public boolean isEmpty() {
+        return moves.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "PlacementDelta" + moves;
+    }
+
+    /**
+     * Move of a data from one node to another. A data newly placed has no source and a data no longer needed has no
+     * target.
+     */
+    public static class Move {
+        private final int data;
+        private final SystemNode from;
+        private final SystemNode to;
+
+        Move(int data, SystemNode from, SystemNode to) {
+            this.data = data;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Get the id of the moved data
+         * @return the id of the data
+         */
+        public int getData() {
+            return data;
+        }
+
+        /**
+         * Get the node the data was on
+         * @return the previous holder, or null if the data was not placed
+         */
+        public SystemNode getFrom() {
+            return from;
+        }
+
+        /**
+         * Get the node the data is now on
+         * @return the new holder, or null if the data has been dropped
+         */
+        public SystemNode getTo() {
+            return to;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            String source = from == null ? "none" : Integer.toString(from.getId());
+            String target = to == null ? "none" : Integer.toString(to.getId());
+            return "Move(" + data + ", " + source + " -> " + target + ")";
+        }
+    }
+}
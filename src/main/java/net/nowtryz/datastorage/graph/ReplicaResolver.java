@@ -0,0 +1,122 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import net.nowtryz.datastorage.util.IntIntHashMap;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Read path of a placed graph: find the node a user should read a data from. Lookups go through an immutable routing
+ * table, the published {@link Placement} of the graph along with the {@link AbstractDataGraph#getDistanceOracle()
+ * distances} of the graph at that time, so the nearest holder is found by comparing the distances to a few holders.
+ *
+ * <p>The graph publishes a new table each time a placement ends. Distances are snapshots of the topology computed
+ * lazily: a table only costs the searches of the users that look data up, once per topology, and tables published
+ * while the topology is unchanged share them. Lookups never block and can run on any number of threads while the graph
+ * is being modified, only the graph thread writes.
+ *
+ * @see AbstractDataGraph#getResolver()
+ */
+public class ReplicaResolver {
+    private final AtomicReference<RoutingTable> table = new AtomicReference<>(RoutingTable.EMPTY);
+
+    /**
+     * Create the resolver of a graph, routing nowhere until a placement is published
+     */
+    ReplicaResolver() {
+    }
+
+    /**
+     * Find the nearest node holding a data
+     * @param user the user reading the data
+     * @param dataId the id of the data
+     * @return the nearest node holding the data, null if no node the user can reach holds it or if the user was not
+     * part of the graph when the routing table was published
+     */
+    public SystemNode resolve(User user, int dataId) {
+        return this.resolve(user.getId(), dataId);
+    }
+
+    /**
+     * Find the nearest node holding a data
+     * @param userId the id of the user reading the data
+     * @param dataId the id of the data
+     * @return the nearest node holding the data, null if no node the user can reach holds it or if the user was not
+     * part of the graph when the routing table was published
+     */
+    public SystemNode resolve(int userId, int dataId) {
+        return table.get().resolve(userId, dataId);
+    }
+
+    /**
+     * Get the version of the routing table lookups currently go through
+     * @return the version of the placement the table routes on
+     * @see Placement#getVersion()
+     */
+    public long getVersion() {
+        return table.get().placement.getVersion();
+    }
+
+    /**
+     * Build a routing table from the given placement of the graph and publish it. Must be called by the thread
+     * modifying the graph.
+     * @param graph the placed graph
+     * @param placement the placement to route on
+     */
+    void refresh(AbstractDataGraph graph, Placement placement) {
+        table.set(new RoutingTable(graph, placement, table.get()));
+    }
+
+    /**
+     * Immutable index of the holders of each data, along with the distances to them
+     */
+    private static class RoutingTable {
+        static final RoutingTable EMPTY = new RoutingTable();
+
+        final Placement placement;
+        // topology the users were indexed on, kept to index them once per topology
+        final DistanceMatrix topology;
+        final IntIntHashMap users;
+        final DistanceOracle distances;
+
+        private RoutingTable() {
+            this.placement = Placement.empty();
+            this.topology = null;
+            this.users = new IntIntHashMap();
+            this.distances = null;
+        }
+
+        RoutingTable(AbstractDataGraph graph, Placement placement, RoutingTable previous) {
+            this.placement = placement;
+            this.topology = graph.getDistances();
+            this.distances = graph.getDistanceOracle();
+            if (previous.topology == topology) {
+                this.users = previous.users;
+                return;
+            }
+
+            this.users = new IntIntHashMap(topology.userCount());
+            for (int ordinal = 0; ordinal < topology.userCount(); ordinal++) {
+                User user = graph.userAt(ordinal);
+                if (user != null) users.put(user.getId(), ordinal, -1);
+            }
+        }
+
+        SystemNode resolve(int userId, int dataId) {
+            int user = users.get(userId, -1);
+            if (user < 0) return null;
+
+            int best = -1;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            for (int holder : placement.holders(dataId)) {
+                double distance = distances.get(user, holder);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = holder;
+                }
+            }
+            return best < 0 ? null : placement.nodeAt(best);
+        }
+    }
+}
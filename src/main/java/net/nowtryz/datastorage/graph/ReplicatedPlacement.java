@@ -0,0 +1,254 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.Data;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.knapsack.KnapsackSolver;
+import net.nowtryz.datastorage.metrics.PlacementListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static net.nowtryz.datastorage.util.ArraysUtils.indexOfMax;
+
+/**
+ * Placement of several copies of each data, each user reading the copy the nearest to it. The first copy of a data goes
+ * on the node with the best score, as for a single copy, and is mandatory. Each extra copy goes on the node with enough
+ * free space that brings the most to users compared to the copies already placed, and is skipped if no user would
+ * read it.
+ *
+ * <p>Overweight nodes are repaired like {@link OptimizedDataGraph} does, with the value of a copy being its marginal
+ * contribution: what its users would lose if they had to read the next nearest copy. The only copy of a data always
+ * prevails over extra copies: only copies are arranged first, extra copies then share the space they leave. Evicted
+ * copies are placed again on the nodes left in the next round. Copies are told apart by the node holding them, so a
+ * node holds at most one copy of a data.
+ */
+class ReplicatedPlacement {
+    private final OptimizedDataGraph graph;
+    private final ReplicationPolicy policy;
+    private final KnapsackSolver solver;
+    private final boolean parallel;
+    private final PlacementListener listener;
+
+    private SystemNode[] nodes;
+    private int[] ordinals;
+
+    /**
+     * Prepare a replicated placement on the given graph
+     * @param graph the graph to place data on
+     * @param policy the number of copies of each data
+     * @param solver the solver used to repair overweight nodes
+     * @param parallel whether to place data and repair nodes with parallel streams
+     */
+    ReplicatedPlacement(OptimizedDataGraph graph, ReplicationPolicy policy, KnapsackSolver solver, boolean parallel) {
+        this.graph = graph;
+        this.policy = policy;
+        this.solver = solver;
+        this.parallel = parallel;
+        this.listener = graph.getListener();
+    }
+
+    /**
+     * Place the missing copies of the given data, copies already holden by nodes count as placed
+     * @param dataList the data to place
+     */
+    void place(List<Data> dataList) {
+        nodes = graph.getSystemNodes().toArray(SystemNode[]::new);
+        ordinals = Arrays.stream(nodes).mapToInt(graph::ordinalOf).toArray();
+        // compute the distances once, before workers start reading them
+        graph.getDistanceOracle();
+
+        List<SystemNode> remaining = new ArrayList<>(Arrays.asList(nodes));
+        int round = 0;
+
+        do {
+            boolean[] available = new boolean[nodes.length];
+            for (int i = 0; i < nodes.length; i++) available[i] = remaining.contains(nodes[i]);
+            int placed = dataList.size();
+            (parallel ? dataList.parallelStream() : dataList.stream())
+                    .forEach(data -> this.addReplicas(data, available));
+
+            // retrieve overweight nodes and remove them from accessible nodes
+            List<SystemNode> overweightNodes = remaining.stream()
+                    .filter(SystemNode::isOverweight)
+                    .collect(Collectors.toList());
+            remaining.removeAll(overweightNodes);
+
+            // evicted copies are placed again in the next round
+            dataList = (parallel ? overweightNodes.parallelStream() : overweightNodes.stream())
+                    .flatMap(this::removeInvalidReplicas)
+                    .distinct()
+                    .collect(Collectors.toList());
+            listener.roundCompleted(round++, placed, overweightNodes.size());
+
+            // we can quit the loop if all copies are placed or if there isn't enough place
+        } while (dataList.size() > 0 && remaining.size() > 0);
+
+        // only the first copy of a data is mandatory
+        if (dataList.stream().anyMatch(data -> this.holders(data.getId()).length == 0)) {
+            throw new NotEnoughSpaceException();
+        }
+    }
+
+    /**
+     * Put the missing copies of a data on the available nodes, without taking care of the max weight
+     * @param data the data to place
+     * @param available whether each node can receive data, indexed like the nodes
+     */
+    private void addReplicas(Data data, boolean[] available) {
+        final int[] users = graph.interestedUsers(data.getId());
+        final double[] weights = graph.weightsOf(data.getId(), users);
+        final int wanted = Math.min(policy.replicasOf(data, users.length), nodes.length);
+        final DistanceOracle distances = graph.getDistanceOracle();
+        final double[] row = new double[nodes.length];
+        final double[] gains = new double[nodes.length];
+
+        // best proximity of each user to the copies already placed
+        final double[] served = new double[users.length];
+        int[] holders = this.holders(data.getId());
+        for (int holder : holders) this.serve(distances, holder, users, served);
+
+        for (int copies = holders.length; copies < wanted; copies++) {
+            Arrays.fill(gains, 0);
+            for (int u = 0; u < users.length; u++) {
+                distances.get(users[u], ordinals, row);
+                final double weight = weights == null ? 1 : weights[u];
+                for (int i = 0; i < nodes.length; i++) {
+                    gains[i] += weight * Math.max(0, 1 / (row[i] * row[i]) - served[u]);
+                }
+            }
+            // nodes already holding a copy or full of evicted data can't receive one, extra copies only use free space
+            for (int i = 0; i < nodes.length; i++) {
+                boolean full = copies > 0 && !nodes[i].hasEnoughSpace(data.getSize());
+                if (!available[i] || full || nodes[i].contains(data.getId())) gains[i] = Double.NEGATIVE_INFINITY;
+            }
+
+            int best;
+            do {
+                best = indexOfMax(gains);
+                if (best < 0 || gains[best] == Double.NEGATIVE_INFINITY) return;
+                // an extra copy no user would read is not worth its space
+                if (copies > 0 && gains[best] <= 0) return;
+                // the first copy is mandatory, extra copies are only added if the node still has room for them, other
+                // workers may have filled it since it was checked
+                if (copies == 0) nodes[best].addToStorage(data);
+                else if (!nodes[best].tryAddToStorage(data)) gains[best] = Double.NEGATIVE_INFINITY;
+            } while (gains[best] == Double.NEGATIVE_INFINITY);
+            this.serve(distances, best, users, served);
+        }
+    }
+
+    /**
+     * Update the best proximity of each user with a new copy
+     * @param distances the distances of the graph
+     * @param node the index of the node holding the copy
+     * @param users the ordinals of the users
+     * @param served the best proximity of each user, indexed like the users
+     */
+    private void serve(DistanceOracle distances, int node, int[] users, double[] served) {
+        for (int u = 0; u < users.length; u++) {
+            double d = distances.get(users[u], ordinals[node]);
+            served[u] = Math.max(served[u], 1 / (d * d));
+        }
+    }
+
+    /**
+     * Find the nodes holding a copy of a data
+     * @param id the id of the data
+     * @return the indexes of the nodes holding the data
+     */
+    private int[] holders(int id) {
+        return IntStream.range(0, nodes.length).filter(i -> nodes[i].contains(id)).toArray();
+    }
+
+    /**
+     * Solve the 0-1 knapsack problem of the given node to find the best arrangement of copies. Data missing from the
+     * catalog stay on the node and only take their space.
+     * @param node the "knapsack" to consider
+     * @return data whose copy has been evicted
+     */
+    private Stream<Data> removeInvalidReplicas(SystemNode node) {
+        final DistanceMatrix distances = graph.getDistances();
+        final int ordinal = graph.ordinalOf(node);
+        final int[] ids = Arrays.stream(node.getDataIds())
+                .filter(id -> graph.getCatalog().get(id) != null)
+                .toArray();
+        final int[] weights = new int[ids.length];
+        final double[] values = new double[ids.length];
+        final boolean[] sole = new boolean[ids.length];
+        int capacity = node.getCapacity() - node.getUsedSpace();
+
+        for (int i = 0; i < ids.length; i++) {
+            weights[i] = graph.getCatalog().sizeOf(ids[i]);
+            capacity += node.getDataSize(ids[i]);
+            values[i] = this.contribution(distances, ordinal, ids[i]);
+            sole[i] = this.holders(ids[i]).length == 1;
+        }
+
+        // only copies prevail over extra copies: keep the best only copies first, then fill the space left with extras
+        final BitSet selected = new BitSet(ids.length);
+        final int[] soles = IntStream.range(0, ids.length).filter(i -> sole[i]).toArray();
+        final int[] extras = IntStream.range(0, ids.length).filter(i -> !sole[i]).toArray();
+        final int left = capacity - this.solve(node, soles, weights, values, Math.max(0, capacity), selected);
+        this.solve(node, extras, weights, values, Math.max(0, left), selected);
+        listener.dataEvicted(node, ids.length - selected.cardinality());
+
+        return IntStream.range(0, ids.length)
+                .filter(i -> !selected.get(i))
+                .map(i -> ids[i])
+                .peek(node::removeFromStorage)
+                .mapToObj(graph.getCatalog()::get);
+    }
+
+    /**
+     * Solve the 0-1 knapsack problem of a subset of the copies held by a node
+     * @param node the node holding the copies
+     * @param items the indexes of the copies to consider
+     * @param weights the weight of every copy of the node
+     * @param values the value of every copy of the node
+     * @param capacity the space available for the subset
+     * @param selected the set receiving the indexes of the selected copies
+     * @return the space used by the selected copies
+     */
+    private int solve(SystemNode node, int[] items, int[] weights, double[] values, int capacity, BitSet selected) {
+        final int[] itemWeights = Arrays.stream(items).map(i -> weights[i]).toArray();
+        final double[] itemValues = Arrays.stream(items).mapToDouble(i -> values[i]).toArray();
+
+        final long start = System.nanoTime();
+        final BitSet chosen = solver.solve(itemWeights, itemValues, capacity);
+        listener.knapsackSolved(node, items.length, System.nanoTime() - start);
+
+        int used = 0;
+        for (int i = chosen.nextSetBit(0); i >= 0; i = chosen.nextSetBit(i + 1)) {
+            selected.set(items[i]);
+            used += itemWeights[i];
+        }
+        return used;
+    }
+
+    /**
+     * Compute the marginal contribution of the copy of a data held by a node: the proximity its users would lose if
+     * they had to read the next nearest copy
+     * @param distances the exact distances of the graph
+     * @param node the ordinal of the node holding the copy
+     * @param id the id of the data
+     * @return the contribution of the copy
+     */
+    private double contribution(DistanceMatrix distances, int node, int id) {
+        final int[] others = Arrays.stream(this.holders(id)).map(i -> ordinals[i]).filter(o -> o != node).toArray();
+        final int[] users = graph.interestedUsers(id);
+        final double[] weights = graph.weightsOf(id, users);
+        double contribution = 0;
+        for (int u = 0; u < users.length; u++) {
+            final double[] row = distances.row(users[u]);
+            double next = 0;
+            for (int other : others) next = Math.max(next, 1 / (row[other] * row[other]));
+            contribution += (weights == null ? 1 : weights[u]) * Math.max(0, 1 / (row[node] * row[node]) - next);
+        }
+        return contribution;
+    }
+}
@@ -0,0 +1,41 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.Data;
+
+/**
+ * Number of copies of a data to place on the graph. Users read the copy the nearest to them, so more copies bring data
+ * closer to users spread across the graph at the cost of storage.
+ *
+ * @see OptimizedDataGraph#setReplicationPolicy(ReplicationPolicy)
+ */
+@FunctionalInterface
+public interface ReplicationPolicy {
+    /**
+     * Get the number of copies of a data
+     * @param data the data to place
+     * @param users the number of users interested in the data
+     * @return the wanted number of copies, at least 1
+     */
+    int replicasOf(Data data, int users);
+
+    /**
+     * Place the same number of copies of every data
+     * @param replicas the number of copies
+     * @return the policy
+     */
+    static ReplicationPolicy fixed(int replicas) {
+        if (replicas <= 0) throw new IllegalArgumentException("At least one replica is needed");
+        return (data, users) -> replicas;
+    }
+
+    /**
+     * Place a copy of a data for every given number of interested users
+     * @param usersPerReplica the number of users served by a copy
+     * @param maxReplicas the max number of copies of a data
+     * @return the policy
+     */
+    static ReplicationPolicy perUsers(int usersPerReplica, int maxReplicas) {
+        if (usersPerReplica <= 0 || maxReplicas <= 0) throw new IllegalArgumentException("Arguments must be positive");
+        return (data, users) -> Math.max(1, Math.min(maxReplicas, (users + usersPerReplica - 1) / usersPerReplica));
+    }
+}
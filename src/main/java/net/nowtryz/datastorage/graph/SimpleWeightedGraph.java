@@ -44,8 +44,8 @@ public class SimpleWeightedGraph<V> extends org.jgrapht.graph.SimpleWeightedGrap
      * @return The newly created edge if added to the graph, otherwise null.
      */
     public DefaultWeightedEdge addEdge(V sourceVertex, V targetVertex, double weight) {
-        DefaultWeightedEdge edge = super.addEdge(sourceVertex, targetVertex);
-        super.setEdgeWeight(edge, weight);
+        DefaultWeightedEdge edge = this.addEdge(sourceVertex, targetVertex);
+        if (edge != null) this.setEdgeWeight(edge, weight);
         return edge;
     }
 }
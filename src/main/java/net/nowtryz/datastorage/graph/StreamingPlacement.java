@@ -0,0 +1,157 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import net.nowtryz.datastorage.util.IntIntHashMap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+import static net.nowtryz.datastorage.util.ArraysUtils.indexOfMax;
+
+/**
+ * Place a catalog of data read a chunk at a time, for catalogs too large to be held in memory. Each data is put on the
+ * node with the best score if it has enough space left. Data whose best node is full are deferred to a bounded repair
+ * queue and, once the queue is full or the source exhausted, placed by decreasing score per size unit on the best node
+ * that still has room.
+ *
+ * <p>Only the current chunk and the repair queue are kept in memory, data are never materialized as
+ * {@link net.nowtryz.datastorage.entity.Data Data} objects nor registered in the catalog of the graph. Nodes keep the
+ * size of streamed data with their id, and other strategies leave data missing from their catalog where they are, only
+ * counting the space they take.
+ */
+public class StreamingPlacement {
+    private final AbstractDataGraph graph;
+    private final int[] queuedIds;
+    private final int[] queuedSizes;
+    private final double[] queuedDensities;
+    private final int[][] queuedUsers;
+    private int queued = 0;
+
+    private DistanceOracle distances;
+    private SystemNode[] nodes;
+    private int[] nodeOrdinals;
+    private double[] scores;
+    private IntIntHashMap userOrdinals;
+
+    /**
+     * Prepare a streaming placement on the given graph
+     * @param graph the graph to place data on
+     * @param repairCapacity the max number of deferred data
+     */
+    public StreamingPlacement(AbstractDataGraph graph, int repairCapacity) {
+        if (repairCapacity <= 0) throw new IllegalArgumentException("The repair queue must have a positive capacity");
+        this.graph = graph;
+        this.queuedIds = new int[repairCapacity];
+        this.queuedSizes = new int[repairCapacity];
+        this.queuedDensities = new double[repairCapacity];
+        this.queuedUsers = new int[repairCapacity][];
+    }
+
+    /**
+     * Place all data of the given source
+     * @param chunks the source of data descriptors
+     * @return the number of placed data
+     */
+    public long place(Iterator<DataChunk> chunks) {
+        this.prepare();
+        long placed = 0;
+
+        while (chunks.hasNext()) {
+            DataChunk chunk = chunks.next();
+            for (int i = 0; i < chunk.size(); i++) {
+                int[] users = this.toOrdinals(chunk.getUsers(i));
+                if (this.placeOnBestSpot(chunk.getId(i), chunk.getSize(i), users, false)) {
+                    placed++;
+                    continue;
+                }
+
+                if (queued == queuedIds.length) placed += this.repair();
+                this.defer(chunk.getId(i), chunk.getSize(i), users);
+            }
+        }
+
+        return placed + this.repair();
+    }
+
+    private void prepare() {
+        DistanceMatrix matrix = graph.getDistances();
+        distances = graph.getDistanceOracle();
+        nodes = IntStream.range(0, matrix.nodeCount())
+                .mapToObj(graph::systemNodeAt)
+                .filter(Objects::nonNull)
+                .toArray(SystemNode[]::new);
+        nodeOrdinals = Arrays.stream(nodes).mapToInt(graph::ordinalOf).toArray();
+        scores = new double[nodes.length];
+
+        userOrdinals = new IntIntHashMap(matrix.userCount());
+        for (int ordinal = 0; ordinal < matrix.userCount(); ordinal++) {
+            User user = graph.userAt(ordinal);
+            if (user != null) userOrdinals.put(user.getId(), ordinal, -1);
+        }
+    }
+
+    private int[] toOrdinals(int[] userIds) {
+        // users that are not part of the graph are ignored
+        return Arrays.stream(userIds).map(id -> userOrdinals.get(id, -1)).filter(o -> o >= 0).toArray();
+    }
+
+    /**
+     * Put a data on the node with the best score
+     * @param id the id of the data
+     * @param size the size of the data
+     * @param users the ordinals of interested users
+     * @param fallback whether to fall back on the best node with enough space when the best node is full
+     * @return true if the data has been placed
+     */
+    private boolean placeOnBestSpot(int id, int size, int[] users, boolean fallback) {
+        graph.computeScores(distances, nodeOrdinals, users, graph.weightsOf(id, users), scores);
+        int best = indexOfMax(scores);
+        int bestFitting = -1;
+
+        for (int i = 0; i < nodes.length; i++) {
+            boolean better = bestFitting < 0 || scores[i] > scores[bestFitting];
+            if (better && nodes[i].hasEnoughSpace(size)) bestFitting = i;
+        }
+
+        if (bestFitting < 0 || (!fallback && bestFitting != best)) return false;
+        nodes[bestFitting].addToStorage(id, size);
+        return true;
+    }
+
+    private void defer(int id, int size, int[] users) {
+        graph.computeScores(distances, nodeOrdinals, users, graph.weightsOf(id, users), scores);
+        int node = indexOfMax(scores);
+        double best = node < 0 ? 0 : scores[node];
+
+        queuedIds[queued] = id;
+        queuedSizes[queued] = size;
+        queuedDensities[queued] = size == 0 ? Double.POSITIVE_INFINITY : best / size;
+        queuedUsers[queued] = users;
+        queued++;
+    }
+
+    /**
+     * Place all deferred data, the most profitable per size unit first
+     * @return the number of placed data
+     */
+    private int repair() {
+        Integer[] order = new Integer[queued];
+        for (int i = 0; i < queued; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingDouble((Integer i) -> queuedDensities[i]).reversed());
+
+        for (int i : order) {
+            if (!this.placeOnBestSpot(queuedIds[i], queuedSizes[i], queuedUsers[i], true)) {
+                throw new NotEnoughSpaceException();
+            }
+            queuedUsers[i] = null;
+        }
+
+        int placed = queued;
+        queued = 0;
+        return placed;
+    }
+}
@@ -0,0 +1,152 @@
+package net.nowtryz.datastorage.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Users of a graph grouped by their links: users connected to the same system nodes with the same weights are at the
+ * same distance of every node, so a single one of them, the representative of the group, needs a row of distances and
+ * a score computed for it. Users behind the same access point typically fall in the same group.
+ *
+ * <p>Groups reflect the topology of the graph at the time they were built, the graph drops them with its distances.
+ */
+class UserGroups {
+    // positions of representatives in a compressed list, shared by all groups and left filled with -1 between calls
+    private static final ThreadLocal<int[]> POSITIONS = new ThreadLocal<>();
+
+    private final int[] representatives;
+    private final int count;
+
+    private UserGroups(int[] representatives, int count) {
+        this.representatives = representatives;
+        this.count = count;
+    }
+
+    /**
+     * Group the users of a graph. The representative of a group is the user with the lowest ordinal.
+     * @param graph the frozen graph
+     * @param used tells whether a user ordinal is in use
+     * @return the groups of users
+     */
+    static UserGroups of(CompactGraph graph, IntPredicate used) {
+        final int[] representatives = new int[graph.userCount()];
+        final Map<Links, Integer> groups = new HashMap<>();
+        int count = 0;
+        for (int user = 0; user < representatives.length; user++) {
+            representatives[user] = user;
+            if (!used.test(user)) continue;
+            Integer representative = groups.putIfAbsent(Links.of(graph, graph.userVertex(user)), user);
+            if (representative != null) representatives[user] = representative;
+            else count++;
+        }
+        return new UserGroups(representatives, count);
+    }
+
+    /**
+     * Get the number of groups
+     * @return the number of distinct groups of users in use
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Get the representative of the group of a user
+     * @param user the ordinal of the user
+     * @return the ordinal of the representative, the user itself if it is alone
+     */
+    int representativeOf(int user) {
+        return user < representatives.length ? representatives[user] : user;
+    }
+
+    /**
+     * Replace users by the representatives of their groups
+     * @param users the ordinals of users
+     * @param weights the weight of each user indexed like the users, null if they all weigh 1
+     * @return the distinct representatives with the sum of the weights of the given users in their group
+     */
+    Weighted compress(int[] users, double[] weights) {
+        final int[] positions = positionsOf(representatives.length);
+        final int[] compressed = new int[users.length];
+        final double[] sums = new double[users.length];
+        int size = 0;
+        for (int u = 0; u < users.length; u++) {
+            int representative = this.representativeOf(users[u]);
+            int position = positions[representative];
+            if (position < 0) {
+                position = positions[representative] = size++;
+                compressed[position] = representative;
+            }
+            sums[position] += weights == null ? 1 : weights[u];
+        }
+        // leave the buffer clean for the next call
+        for (int i = 0; i < size; i++) positions[compressed[i]] = -1;
+        return new Weighted(Arrays.copyOf(compressed, size), Arrays.copyOf(sums, size));
+    }
+
+    private static int[] positionsOf(int userCount) {
+        int[] positions = POSITIONS.get();
+        if (positions == null || positions.length < userCount) {
+            positions = new int[userCount];
+            Arrays.fill(positions, -1);
+            POSITIONS.set(positions);
+        }
+        return positions;
+    }
+
+    /**
+     * Representatives of users, each standing for a number of them
+     */
+    static class Weighted {
+        final int[] users;
+        final double[] weights;
+
+        Weighted(int[] users, double[] weights) {
+            this.users = users;
+            this.weights = weights;
+        }
+    }
+
+    /**
+     * Links of a user, sorted by target and weight so equal sets of links are equal keys
+     */
+    private static class Links {
+        private final long[] links;
+        private final int hash;
+
+        private Links(long[] links) {
+            this.links = links;
+            this.hash = Arrays.hashCode(links);
+        }
+
+        static Links of(CompactGraph graph, int vertex) {
+            final int first = graph.firstLink(vertex);
+            final int count = graph.endLink(vertex) - first;
+            final long[][] pairs = new long[count][];
+            for (int i = 0; i < count; i++) {
+                int link = first + i;
+                pairs[i] = new long[]{graph.target(link), Double.doubleToLongBits(graph.weight(link))};
+            }
+            Arrays.sort(pairs, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+            final long[] links = new long[2 * count];
+            for (int i = 0; i < count; i++) {
+                links[2 * i] = pairs[i][0];
+                links[2 * i + 1] = pairs[i][1];
+            }
+            return new Links(links);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Links && Arrays.equals(links, ((Links) o).links);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package net.nowtryz.datastorage.io;
+
+import net.nowtryz.datastorage.entity.DataCatalog;
+import net.nowtryz.datastorage.entity.Node;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import net.nowtryz.datastorage.graph.AbstractDataGraph;
+import net.nowtryz.datastorage.util.LongIntHashMap;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Bulk loader of a graph from text files. Files are memory mapped and split in chunks at line boundaries, chunks are
+ * parsed in parallel into primitive arrays and the graph is then built in a single pass.
+ *
+ * <p>Each line of a file is a record of numbers separated by blanks or commas. Empty lines and lines starting with
+ * {@code #} are ignored. The files are:
+ * <pre>
+ * nodes  id capacity
+ * users  id data...   ids of the data the user is interested in
+ * data   id size
+ * edges  source target [weight]   ids of users or nodes, the weight defaults to 1
+ * </pre>
+ * Ids are external ids, any long. Users and nodes share the same id space so edges can refer to both. They are mapped
+ * to dense internal ids following the order of the files: the n-th record of a file, not counting ignored lines, gets
+ * the id n - 1, so loading the same files always gives the same ids.
+ */
+public class GraphLoader {
+    private static final long DEFAULT_CHUNK_SIZE = 64 << 20;
+    private static final long MAX_CHUNK_SIZE = 1 << 30;
+    private static final long[] POWERS_OF_TEN = LongStream.iterate(1, p -> p * 10).limit(16).toArray();
+
+    private Path nodesPath;
+    private Path usersPath;
+    private Path dataPath;
+    private Path edgesPath;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private LongIntHashMap vertexIds = new LongIntHashMap();
+    private LongIntHashMap dataIds = new LongIntHashMap();
+    private SystemNode[] nodes = new SystemNode[0];
+    private User[] users = new User[0];
+
+    /**
+     * Set the file of system nodes
+     * @param path the path of the file
+     * @return this loader
+     */
+    public GraphLoader nodes(Path path) {
+        this.nodesPath = path;
+        return this;
+    }
+
+    /**
+     * Set the file of users
+     * @param path the path of the file
+     * @return this loader
+     */
+    public GraphLoader users(Path path) {
+        this.usersPath = path;
+        return this;
+    }
+
+    /**
+     * Set the file of data
+     * @param path the path of the file
+     * @return this loader
+     */
+    public GraphLoader data(Path path) {
+        this.dataPath = path;
+        return this;
+    }
+
+    /**
+     * Set the file of links
+     * @param path the path of the file
+     * @return this loader
+     */
+    public GraphLoader edges(Path path) {
+        this.edgesPath = path;
+        return this;
+    }
+
+    /**
+     * Set the number of threads parsing files
+     * @param parallelism the number of threads
+     * @return this loader
+     */
+    public GraphLoader parallelism(int parallelism) {
+        if (parallelism <= 0) throw new IllegalArgumentException("At least one thread is needed");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Set the size of the chunks files are split in. Files are split in at least as many chunks as threads.
+     * @param chunkSize the number of bytes of a chunk, at most 1 GiB
+     * @return this loader
+     */
+    public GraphLoader chunkSize(long chunkSize) {
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) throw new IllegalArgumentException("Invalid chunk size");
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Load the graph described by the files. Files that were not set are considered empty.
+     * @param factory the constructor of the graph, from the catalog of loaded data
+     * @param <G> the type of graph
+     * @return the loaded graph
+     * @throws IOException if a file cannot be read
+     * @throws IllegalArgumentException if a file is malformed or refers to an unknown id
+     */
+    public <G extends AbstractDataGraph> G load(Function<DataCatalog, G> factory) throws IOException {
+        final Table dataTable;
+        final Table nodeTable;
+        final Table userTable;
+        final Table edgeTable;
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            dataTable = this.read(dataPath, -1, pool);
+            nodeTable = this.read(nodesPath, -1, pool);
+            userTable = this.read(usersPath, -1, pool);
+            edgeTable = this.read(edgesPath, 2, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        // data get the dense ids of their record
+        final DataCatalog catalog = new DataCatalog(dataTable.rows);
+        dataIds = new LongIntHashMap(dataTable.rows);
+        for (int row = 0; row < dataTable.rows; row++) {
+            dataTable.requireWidth(row, 2, 2, dataPath);
+            if (dataIds.put(dataTable.get(row, 0), row, -1) >= 0) {
+                throw new IllegalArgumentException("Duplicate data id " + dataTable.get(row, 0) + " in " + dataPath);
+            }
+            catalog.create(row, Math.toIntExact(dataTable.get(row, 1)));
+        }
+
+        vertexIds = new LongIntHashMap(nodeTable.rows + userTable.rows);
+        nodes = new SystemNode[nodeTable.rows];
+        for (int row = 0; row < nodeTable.rows; row++) {
+            nodeTable.requireWidth(row, 2, 2, nodesPath);
+            this.registerVertex(nodeTable.get(row, 0), row, nodesPath);
+            nodes[row] = SystemNode.withId(row, Math.toIntExact(nodeTable.get(row, 1)));
+        }
+
+        // users are encoded as negative values to share the id space of nodes
+        users = new User[userTable.rows];
+        for (int row = 0; row < userTable.rows; row++) {
+            this.registerVertex(userTable.get(row, 0), -row - 1, usersPath);
+            users[row] = User.withId(row, this.interestsOf(userTable, row));
+        }
+
+        // check every link before touching the graph
+        final Node[] sources = new Node[edgeTable.rows];
+        final Node[] targets = new Node[edgeTable.rows];
+        final double[] weights = new double[edgeTable.rows];
+        for (int row = 0; row < edgeTable.rows; row++) {
+            edgeTable.requireWidth(row, 2, 3, edgesPath);
+            sources[row] = this.vertex(edgeTable.get(row, 0));
+            targets[row] = this.vertex(edgeTable.get(row, 1));
+            weights[row] = edgeTable.width(row) > 2 ? edgeTable.getDouble(row, 2) : 1;
+            if (sources[row] instanceof User && targets[row] instanceof User) {
+                throw new IllegalArgumentException("Link between users " + edgeTable.get(row, 0) + " and "
+                        + edgeTable.get(row, 1) + " in " + edgesPath);
+            }
+            if (!Double.isFinite(weights[row]) || weights[row] < 0) {
+                throw new IllegalArgumentException("Invalid weight " + weights[row] + " of the link between "
+                        + edgeTable.get(row, 0) + " and " + edgeTable.get(row, 1) + " in " + edgesPath);
+            }
+        }
+
+        // users first, so they get the ordinals of their record
+        final Node[] vertices = new Node[users.length + nodes.length];
+        System.arraycopy(users, 0, vertices, 0, users.length);
+        System.arraycopy(nodes, 0, vertices, users.length, nodes.length);
+
+        final G graph = factory.apply(catalog);
+        graph.addAll(vertices, sources, targets, weights);
+        return graph;
+    }
+
+    /**
+     * Get a loaded system node
+     * @param externalId the id of the node in the files
+     * @return the node, null if no node has this id
+     */
+    public SystemNode getNode(long externalId) {
+        int index = vertexIds.get(externalId, Integer.MIN_VALUE);
+        return index >= 0 ? nodes[index] : null;
+    }
+
+    /**
+     * Get a loaded user
+     * @param externalId the id of the user in the files
+     * @return the user, null if no user has this id
+     */
+    public User getUser(long externalId) {
+        int index = vertexIds.get(externalId, Integer.MIN_VALUE);
+        return index < 0 && index != Integer.MIN_VALUE ? users[-index - 1] : null;
+    }
+
+    /**
+     * Get the id of a loaded data
+     * @param externalId the id of the data in the files
+     * @return the id of the data in the catalog of the graph, -1 if no data has this id
+     */
+    public int getDataId(long externalId) {
+        return dataIds.get(externalId, -1);
+    }
+
+    private void registerVertex(long externalId, int index, Path path) {
+        if (vertexIds.put(externalId, index, Integer.MIN_VALUE) != Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("Duplicate vertex id " + externalId + " in " + path);
+        }
+    }
+
+    private Node vertex(long externalId) {
+        int index = vertexIds.get(externalId, Integer.MIN_VALUE);
+        if (index == Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("Unknown vertex id " + externalId + " in " + edgesPath);
+        }
+        return index >= 0 ? nodes[index] : users[-index - 1];
+    }
+
+    private int[] interestsOf(Table table, int row) {
+        table.requireWidth(row, 1, Integer.MAX_VALUE, usersPath);
+        int[] interests = new int[table.width(row) - 1];
+        for (int i = 0; i < interests.length; i++) {
+            interests[i] = dataIds.get(table.get(row, i + 1), -1);
+            if (interests[i] < 0) {
+                throw new IllegalArgumentException("Unknown data id " + table.get(row, i + 1) + " in " + usersPath);
+            }
+        }
+        return interests;
+    }
+
+    /**
+     * Parse a file in parallel
+     * @param path the file, null for no record
+     * @param doubleColumn the column holding decimal numbers, -1 if all columns are integers
+     * @param pool the pool to parse chunks in
+     * @return the records of the file
+     * @throws IOException if the file cannot be read
+     */
+    private Table read(Path path, int doubleColumn, ForkJoinPool pool) throws IOException {
+        if (path == null) return new Table(new long[0], new int[1], 0);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long[] bounds = this.boundaries(channel);
+            final Table[] chunks = pool.submit(() -> IntStream.range(0, bounds.length - 1).parallel()
+                    .mapToObj(i -> parse(channel, bounds[i], bounds[i + 1], doubleColumn, path))
+                    .toArray(Table[]::new)
+            ).get();
+            return Table.concat(chunks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading " + path);
+        } catch (ExecutionException e) {
+            // parallel streams rethrow copies of the exceptions of worker threads, find the original one
+            Throwable cause = e.getCause();
+            while (cause.getCause() != null && cause.getCause().getClass() == cause.getClass()) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Split a file in chunks, each chunk starting at the beginning of a line
+     * @param channel the file
+     * @return the offsets of the chunks, followed by the size of the file
+     * @throws IOException if the file cannot be read
+     */
+    private long[] boundaries(FileChannel channel) throws IOException {
+        final long size = channel.size();
+        final long chunks = Math.max(parallelism, (size + chunkSize - 1) / chunkSize);
+        // small files are not worth splitting
+        final int count = (int) Math.max(1, Math.min(chunks, size >> 12));
+        final long[] bounds = new long[count + 1];
+        final ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+
+        for (int i = 1; i < count; i++) {
+            // the chunk starts after the end of the line the nominal offset falls in
+            long position = Math.max(bounds[i - 1], size * i / count - 1);
+            search:
+            while (position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) break;
+                for (int j = 0; j < read; j++) {
+                    if (buffer.get(j) == '\n') {
+                        position += j + 1;
+                        break search;
+                    }
+                }
+                position += read;
+            }
+            bounds[i] = Math.min(position, size);
+        }
+        bounds[count] = size;
+
+        for (int i = 0; i < count; i++) {
+            if (bounds[i + 1] - bounds[i] > Integer.MAX_VALUE) throw new IllegalArgumentException("Line too long");
+        }
+        return bounds;
+    }
+
+    /**
+     * Parse the records of a chunk of a file
+     */
+    private static Table parse(FileChannel channel, long start, long end, int doubleColumn, Path path) {
+        final MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        final int length = buffer.limit();
+        long[] values = new long[Math.max(16, length / 4)];
+        int[] offsets = new int[Math.max(16, length / 16)];
+        int count = 0;
+        int rows = 0;
+        int position = 0;
+
+        while (position < length) {
+            // skip blanks before the first token of a line
+            byte b = buffer.get(position);
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                position++;
+                continue;
+            }
+            if (b == '#') {
+                while (position < length && buffer.get(position) != '\n') position++;
+                continue;
+            }
+
+            // a record, up to the end of the line
+            final int first = count;
+            int column = 0;
+            while (position < length && buffer.get(position) != '\n') {
+                b = buffer.get(position);
+                if (b == ' ' || b == '\t' || b == '\r' || b == ',' || b == ';') {
+                    position++;
+                    continue;
+                }
+                int tokenEnd = position;
+                while (tokenEnd < length && !isSeparator(buffer.get(tokenEnd))) tokenEnd++;
+
+                if (count == values.length) values = Arrays.copyOf(values, values.length * 2);
+                try {
+                    values[count++] = column == doubleColumn
+                            ? Double.doubleToRawLongBits(parseDouble(buffer, position, tokenEnd))
+                            : parseLong(buffer, position, tokenEnd);
+                } catch (NumberFormatException e) {
+                    String message = "Invalid number at byte " + (start + position) + " of " + path;
+                    throw new IllegalArgumentException(message, e);
+                }
+                column++;
+                position = tokenEnd;
+            }
+
+            if (rows + 2 > offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            offsets[rows++] = first;
+        }
+
+        if (rows + 1 > offsets.length) offsets = Arrays.copyOf(offsets, rows + 1);
+        offsets[rows] = count;
+        return new Table(Arrays.copyOf(values, count), Arrays.copyOf(offsets, rows + 1), rows);
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == ',' || b == ';';
+    }
+
+    private static long parseLong(ByteBuffer buffer, int from, int to) {
+        boolean negative = buffer.get(from) == '-';
+        int i = negative || buffer.get(from) == '+' ? from + 1 : from;
+        if (i == to) throw new NumberFormatException();
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) throw new NumberFormatException();
+            value = Math.addExact(Math.multiplyExact(value, 10), digit);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double parseDouble(ByteBuffer buffer, int from, int to) {
+        boolean negative = buffer.get(from) == '-';
+        int i = negative || buffer.get(from) == '+' ? from + 1 : from;
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && decimals < 0) decimals = 0;
+            else if (b >= '0' && b <= '9' && digits < 18) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (decimals >= 0) decimals++;
+            } else break;
+        }
+
+        // exact mantissa and power of ten, the division is correctly rounded
+        if (i == to && digits > 0 && decimals < POWERS_OF_TEN.length && mantissa < 1L << 53) {
+            double value = decimals <= 0 ? mantissa : mantissa / (double) POWERS_OF_TEN[decimals];
+            return negative ? -value : value;
+        }
+
+        // exponents, long mantissas and special values
+        byte[] bytes = new byte[to - from];
+        for (int j = 0; j < bytes.length; j++) bytes[j] = buffer.get(from + j);
+        return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Records of a file: the values of record r are values[offsets[r]] to values[offsets[r + 1]]
+     */
+    private static class Table {
+        final long[] values;
+        final int[] offsets;
+        final int rows;
+
+        Table(long[] values, int[] offsets, int rows) {
+            this.values = values;
+            this.offsets = offsets;
+            this.rows = rows;
+        }
+
+        static Table concat(Table[] tables) {
+            int rows = Arrays.stream(tables).mapToInt(table -> table.rows).sum();
+            long[] values = new long[Arrays.stream(tables).mapToInt(table -> table.values.length).sum()];
+            int[] offsets = new int[rows + 1];
+            int row = 0;
+            int count = 0;
+            for (Table table : tables) {
+                System.arraycopy(table.values, 0, values, count, table.values.length);
+                for (int r = 0; r < table.rows; r++) offsets[row++] = count + table.offsets[r];
+                count += table.values.length;
+            }
+            offsets[rows] = count;
+            return new Table(values, offsets, rows);
+        }
+
+        int width(int row) {
+            return offsets[row + 1] - offsets[row];
+        }
+
+        long get(int row, int column) {
+            return values[offsets[row] + column];
+        }
+
+        double getDouble(int row, int column) {
+            return Double.longBitsToDouble(values[offsets[row] + column]);
+        }
+
+        void requireWidth(int row, int min, int max, Path path) {
+            if (this.width(row) < min || this.width(row) > max) {
+                throw new IllegalArgumentException("Record " + (row + 1) + " of " + path + " has " + this.width(row) +
+                        " values, expected " + (min == max ? min : min + " to " + max));
+            }
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package net.nowtryz.datastorage.io;
+
+import net.nowtryz.datastorage.entity.DataCatalog;
+import net.nowtryz.datastorage.entity.Node;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import net.nowtryz.datastorage.graph.AbstractDataGraph;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Binary snapshot of a placed graph: system nodes with their capacity and storage, users with their interests, weighted
+ * links and data sizes. A snapshot is written with {@link #write(AbstractDataGraph, Path)} and read back through a
+ * memory mapping, nodes and users are only materialized when requested. It is written next to its destination and
+ * moved in place once complete, so a crash never leaves a torn snapshot behind.
+ *
+ * <p>Layout, in little-endian order:
+ * <pre>
+ * header   magic, version, node count, user count, edge count, data count (6 ints)
+ *          offsets of the node, user, edge, data, storage, stored size and interest sections (7 longs)
+ * nodes    id, capacity, storage offset, storage count (4 ints per node)
+ * users    id, interest offset, interest count (3 ints per user)
+ * edges    source, target (ints), weight (double), vertices are numbered users first, then nodes
+ * data     size of each data id, -1 for unused ids
+ * storage  data ids held by nodes
+ * stored   size each node accounted for the data it holds, in the order of the storage section
+ * interest data ids users are interested in
+ * </pre>
+ */
+public class PlacementSnapshot {
+    private static final int MAGIC = 0x44535053; // "DSPS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 6 * Integer.BYTES + 7 * Long.BYTES;
+    private static final int NODE_SIZE = 4 * Integer.BYTES;
+    private static final int USER_SIZE = 3 * Integer.BYTES;
+    private static final int EDGE_SIZE = 2 * Integer.BYTES + Double.BYTES;
+
+    private final MappedByteBuffer buffer;
+    private final int nodeCount;
+    private final int userCount;
+    private final int edgeCount;
+    private final int dataCount;
+    private final int nodes;
+    private final int users;
+    private final int edges;
+    private final int data;
+    private final int storage;
+    private final int storedSizes;
+    private final int interests;
+    private final SystemNode[] nodeCache;
+    private final User[] userCache;
+
+    private PlacementSnapshot(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC) throw new IOException("Not a placement snapshot");
+        if (buffer.getInt(4) != VERSION) throw new IOException("Unsupported snapshot version " + buffer.getInt(4));
+
+        this.nodeCount = buffer.getInt(8);
+        this.userCount = buffer.getInt(12);
+        this.edgeCount = buffer.getInt(16);
+        this.dataCount = buffer.getInt(20);
+        this.nodes = (int) buffer.getLong(24);
+        this.users = (int) buffer.getLong(32);
+        this.edges = (int) buffer.getLong(40);
+        this.data = (int) buffer.getLong(48);
+        this.storage = (int) buffer.getLong(56);
+        this.storedSizes = (int) buffer.getLong(64);
+        this.interests = (int) buffer.getLong(72);
+        this.nodeCache = new SystemNode[nodeCount];
+        this.userCache = new User[userCount];
+    }
+
+    /**
+     * Map a snapshot file in memory. Nothing but the header is read until nodes or users are requested.
+     * @param path the path of the snapshot
+     * @return the mapped snapshot
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static PlacementSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping stays valid once the channel is closed
+            return new PlacementSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Write a snapshot of the given graph and of the placement of its data
+     * @param graph the graph to save
+     * @param path the path of the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(AbstractDataGraph graph, Path path) throws IOException {
+        List<User> users = new ArrayList<>();
+        List<SystemNode> nodes = new ArrayList<>();
+        for (Node vertex : graph.vertexSet()) {
+            if (vertex instanceof User) users.add((User) vertex);
+            else if (vertex instanceof SystemNode) nodes.add((SystemNode) vertex);
+        }
+
+        // number vertices as they are written
+        Map<Node, Integer> indexes = new IdentityHashMap<>();
+        for (User user : users) indexes.put(user, indexes.size());
+        for (SystemNode node : nodes) indexes.put(node, indexes.size());
+
+        // sizes are the ones the nodes accounted for, streamed data are not in the catalog
+        List<int[]> stored = new ArrayList<>(nodes.size());
+        List<int[]> storedSizes = new ArrayList<>(nodes.size());
+        long storageCount = 0, interestCount = 0;
+        for (SystemNode node : nodes) {
+            int[] ids = node.getDataIds();
+            int[] sizes = new int[ids.length];
+            for (int i = 0; i < ids.length; i++) sizes[i] = Math.max(0, node.getDataSize(ids[i]));
+            stored.add(ids);
+            storedSizes.add(sizes);
+            storageCount += ids.length;
+        }
+        for (User user : users) interestCount += user.getInterests().length;
+
+        DataCatalog catalog = graph.getCatalog();
+        int edgeCount = graph.edgeSet().size();
+        long nodeSection = HEADER_SIZE;
+        long userSection = nodeSection + (long) NODE_SIZE * nodes.size();
+        long edgeSection = userSection + (long) USER_SIZE * users.size();
+        long dataSection = edgeSection + (long) EDGE_SIZE * edgeCount;
+        long storageSection = dataSection + (long) Integer.BYTES * catalog.size();
+        long storedSizeSection = storageSection + Integer.BYTES * storageCount;
+        long interestSection = storedSizeSection + Integer.BYTES * storageCount;
+        if (interestSection + Integer.BYTES * interestCount > Integer.MAX_VALUE) {
+            throw new IOException("The graph is too large for a snapshot");
+        }
+
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE);
+                 ChannelWriter out = new ChannelWriter(channel)) {
+                out.putInt(MAGIC).putInt(VERSION)
+                        .putInt(nodes.size()).putInt(users.size()).putInt(edgeCount).putInt(catalog.size());
+                out.putLong(nodeSection).putLong(userSection).putLong(edgeSection).putLong(dataSection)
+                        .putLong(storageSection).putLong(storedSizeSection).putLong(interestSection);
+
+                int offset = 0;
+                for (int i = 0; i < nodes.size(); i++) {
+                    SystemNode node = nodes.get(i);
+                    out.putInt(node.getId()).putInt(node.getCapacity()).putInt(offset).putInt(stored.get(i).length);
+                    offset += stored.get(i).length;
+                }
+
+                offset = 0;
+                for (User user : users) {
+                    out.putInt(user.getId()).putInt(offset).putInt(user.getInterests().length);
+                    offset += user.getInterests().length;
+                }
+
+                for (DefaultWeightedEdge edge : graph.edgeSet()) {
+                    out.putInt(indexes.get(graph.getEdgeSource(edge)))
+                            .putInt(indexes.get(graph.getEdgeTarget(edge)))
+                            .putDouble(graph.getEdgeWeight(edge));
+                }
+
+                for (int id = 0; id < catalog.size(); id++) {
+                    out.putInt(catalog.get(id) == null ? -1 : catalog.sizeOf(id));
+                }
+                for (int[] ids : stored) for (int id : ids) out.putInt(id);
+                for (int[] sizes : storedSizes) for (int size : sizes) out.putInt(size);
+                for (User user : users) for (int id : user.getInterests()) out.putInt(id);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    /**
+     * Get the number of system nodes of the snapshot
+     * @return the number of nodes
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Get the number of users of the snapshot
+     * @return the number of users
+     */
+    public int getUserCount() {
+        return userCount;
+    }
+
+    /**
+     * Get the number of links of the snapshot
+     * @return the number of links
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Get the size of a data without materializing anything
+     * @param id the id of the data
+     * @return the size of the data, -1 if the snapshot has no data with this id
+     */
+    public int getDataSize(int id) {
+        return id < 0 || id >= dataCount ? -1 : buffer.getInt(data + id * Integer.BYTES);
+    }
+
+    /**
+     * Get the ids of the data holden by a node, read directly from the mapping
+     * @param index the index of the node in the snapshot
+     * @return a read-only view of the stored ids
+     */
+    public IntBuffer getStorage(int index) {
+        int record = nodes + index * NODE_SIZE;
+        return this.ints(storage, buffer.getInt(record + 8), buffer.getInt(record + 12));
+    }
+
+    /**
+     * Get the sizes a node accounted for the data it holds, read directly from the mapping
+     * @param index the index of the node in the snapshot
+     * @return a read-only view of the sizes, in the order of {@link #getStorage(int)}
+     */
+    public IntBuffer getStoredSizes(int index) {
+        int record = nodes + index * NODE_SIZE;
+        return this.ints(storedSizes, buffer.getInt(record + 8), buffer.getInt(record + 12));
+    }
+
+    /**
+     * Get a system node of the snapshot, creating it on first access
+     * @param index the index of the node in the snapshot
+     * @return the node, with its storage restored
+     */
+    public synchronized SystemNode getNode(int index) {
+        SystemNode node = nodeCache[index];
+        if (node == null) {
+            int record = nodes + index * NODE_SIZE;
+            node = SystemNode.withId(buffer.getInt(record), buffer.getInt(record + 4));
+            IntBuffer ids = this.getStorage(index), sizes = this.getStoredSizes(index);
+            while (ids.hasRemaining()) node.addToStorage(ids.get(), sizes.get());
+            nodeCache[index] = node;
+        }
+        return node;
+    }
+
+    /**
+     * Get a user of the snapshot, creating it on first access
+     * @param index the index of the user in the snapshot
+     * @return the user
+     */
+    public synchronized User getUser(int index) {
+        User user = userCache[index];
+        if (user == null) {
+            int record = users + index * USER_SIZE;
+            IntBuffer view = this.ints(interests, buffer.getInt(record + 4), buffer.getInt(record + 8));
+            int[] ids = new int[view.remaining()];
+            view.get(ids);
+            userCache[index] = user = User.withId(buffer.getInt(record), ids);
+        }
+        return user;
+    }
+
+    /**
+     * Rebuild the whole graph of the snapshot
+     * @param factory the constructor of the graph, called with a catalog holding the data of the snapshot
+     * @param <G> the type of graph
+     * @return the graph, with data placed as they were when the snapshot was written and published as its placement
+     */
+    public <G extends AbstractDataGraph> G toGraph(Function<DataCatalog, G> factory) {
+        DataCatalog catalog = new DataCatalog(dataCount);
+        for (int id = 0; id < dataCount; id++) {
+            int size = this.getDataSize(id);
+            if (size >= 0) catalog.create(id, size);
+        }
+
+        G graph = factory.apply(catalog);
+        for (int i = 0; i < userCount; i++) graph.addVertex(this.getUser(i));
+        for (int i = 0; i < nodeCount; i++) graph.addVertex(this.getNode(i));
+        for (int i = 0; i < edgeCount; i++) {
+            int record = edges + i * EDGE_SIZE;
+            graph.addEdge(this.vertex(buffer.getInt(record)), this.vertex(buffer.getInt(record + 4)),
+                    buffer.getDouble(record + 8));
+        }
+        // nodes come with their storage, readers and the resolver only see it once published
+        graph.publishRestored();
+        return graph;
+    }
+
+    private Node vertex(int index) {
+        return index < userCount ? this.getUser(index) : this.getNode(index - userCount);
+    }
+
+    private IntBuffer ints(int section, int offset, int count) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(section + offset * Integer.BYTES).limit(section + (offset + count) * Integer.BYTES);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * Buffered sequential writer on a channel
+     */
+    private static class ChannelWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        ChannelWriter putInt(int value) throws IOException {
+            if (buffer.remaining() < Integer.BYTES) this.flush();
+            buffer.putInt(value);
+            return this;
+        }
+
+        ChannelWriter putLong(long value) throws IOException {
+            if (buffer.remaining() < Long.BYTES) this.flush();
+            buffer.putLong(value);
+            return this;
+        }
+
+        ChannelWriter putDouble(double value) throws IOException {
+            if (buffer.remaining() < Double.BYTES) this.flush();
+            buffer.putDouble(value);
+            return this;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.flush();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package net.nowtryz.datastorage.knapsack;
+
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Base of the exact solvers, which only ever add up finite values. Scores can be infinite, e.g. for a data wanted by a
+ * user linked to the node with a weight of 0, and such an item is worth more than any selection of finite ones: as many
+ * of them as possible are picked, the lightest first, then the room left is filled with the finite items. Items whose
+ * value is not a number are never picked.
+ */
+abstract class AbstractKnapsack implements KnapsackSolver {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final BitSet solve(int[] weights, double[] values, int capacity) {
+        final int[] finite = IntStream.range(0, values.length).filter(i -> !isInfinite(values[i])).toArray();
+        if (finite.length == values.length) return this.solveFinite(weights, values, capacity);
+
+        final BitSet selected = new BitSet(values.length);
+        int room = capacity;
+        final int[] infinite = IntStream.range(0, values.length)
+                .filter(i -> isInfinite(values[i]))
+                .boxed()
+                .sorted(Comparator.comparingInt(i -> weights[i]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        for (int i : infinite) {
+            if (weights[i] > room) break;
+            room -= weights[i];
+            selected.set(i);
+        }
+
+        final int[] w = new int[finite.length];
+        final double[] v = new double[finite.length];
+        for (int k = 0; k < finite.length; k++) {
+            w[k] = weights[finite[k]];
+            v[k] = values[finite[k]];
+        }
+        final BitSet rest = this.solveFinite(w, v, room);
+        for (int k = rest.nextSetBit(0); k >= 0; k = rest.nextSetBit(k + 1)) selected.set(finite[k]);
+        return selected;
+    }
+
+    /**
+     * Find the best selection of items whose value is never positive infinity
+     * @param weights the weight of each item, must be positive
+     * @param values the value of each item, finite, negative infinity or not a number
+     * @param capacity the max weight of the knapsack
+     * @return the indexes of the selected items
+     */
+    protected abstract BitSet solveFinite(int[] weights, double[] values, int capacity);
+
+    private static boolean isInfinite(double value) {
+        return value == Double.POSITIVE_INFINITY;
+    }
+}
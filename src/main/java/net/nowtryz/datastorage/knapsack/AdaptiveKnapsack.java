@@ -0,0 +1,69 @@
+package net.nowtryz.datastorage.knapsack;
+
+import java.util.BitSet;
+
+/**
+ * Solver delegating to {@link DynamicProgrammingKnapsack} when its decision table stays small enough and to
+ * {@link BranchAndBoundKnapsack} otherwise.
+ */
+public class AdaptiveKnapsack implements KnapsackSolver {
+    /**
+     * Default maximal size of the dynamic programming table, in cells (one bit and one double per capacity unit)
+     */
+    public static final long DEFAULT_MAX_CELLS = 1L << 26;
+    /**
+     * Default maximal capacity solved with dynamic programming, its row of best values taking 8 bytes per capacity unit
+     */
+    public static final int DEFAULT_MAX_CAPACITY = 1 << 22;
+
+    private final KnapsackSolver dynamicProgramming = new DynamicProgrammingKnapsack();
+    private final KnapsackSolver branchAndBound = new BranchAndBoundKnapsack();
+    private final long maxCells;
+    private final int maxCapacity;
+
+    /**
+     * Create an adaptive solver with the {@link #DEFAULT_MAX_CELLS default thresholds}
+     */
+    public AdaptiveKnapsack() {
+        this(DEFAULT_MAX_CELLS);
+    }
+
+    /**
+     * Create an adaptive solver with the {@link #DEFAULT_MAX_CAPACITY default max capacity}
+     * @param maxCells the maximal capacity &times; item count to solve with dynamic programming
+     */
+    public AdaptiveKnapsack(long maxCells) {
+        this(maxCells, DEFAULT_MAX_CAPACITY);
+    }
+
+    /**
+     * Create an adaptive solver
+     * @param maxCells the maximal capacity &times; item count to solve with dynamic programming
+     * @param maxCapacity the maximal capacity to solve with dynamic programming, whatever the number of items
+     */
+    public AdaptiveKnapsack(long maxCells, int maxCapacity) {
+        this.maxCells = maxCells;
+        this.maxCapacity = maxCapacity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BitSet solve(int[] weights, double[] values, int capacity) {
+        return this.select(weights.length, capacity).solve(weights, values, capacity);
+    }
+
+    /**
+     * Get the solver used for a problem of the given size
+     * @param items the number of items
+     * @param capacity the capacity of the knapsack
+     * @return the solver to use
+     */
+    public KnapsackSolver select(int items, int capacity) {
+        // the decision table grows with both dimensions, the row of best values with the capacity only
+        long cells = DynamicProgrammingKnapsack.cells(items, capacity);
+        boolean small = cells <= maxCells && cells < Integer.MAX_VALUE && capacity <= maxCapacity;
+        return small ? dynamicProgramming : branchAndBound;
+    }
+}
@@ -0,0 +1,91 @@
+package net.nowtryz.datastorage.knapsack;
+
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * Branch and bound solver of the 0-1 knapsack problem. Items are explored by decreasing value density and a branch is
+ * cut as soon as the fractional relaxation of the remaining items cannot beat the best selection found so far. Its
+ * memory does not depend on the capacity, which makes it suited to knapsacks too large for
+ * {@link DynamicProgrammingKnapsack}.
+ */
+public class BranchAndBoundKnapsack extends AbstractKnapsack {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected BitSet solveFinite(int[] weights, double[] values, int capacity) {
+        // only keep items that may improve a selection, sorted by decreasing value per weight unit
+        final int[] order = IntStream.range(0, weights.length)
+                .filter(i -> values[i] > 0 && weights[i] <= capacity)
+                .boxed()
+                .sorted((a, b) -> Double.compare(
+                        values[b] * weights[a],
+                        values[a] * weights[b]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        final int n = order.length;
+        final int[] w = new int[n];
+        final double[] v = new double[n];
+        for (int i = 0; i < n; i++) {
+            w[i] = weights[order[i]];
+            v[i] = values[order[i]];
+        }
+
+        final boolean[] current = new boolean[n];
+        final boolean[] best = new boolean[n];
+        double bestValue = 0;
+        double value = 0;
+        long weight = 0;
+        int i = 0;
+
+        while (true) {
+            if (i < n) {
+                if (upperBound(w, v, i, value, weight, capacity) > bestValue) {
+                    // go deeper, taking the item if it fits
+                    current[i] = weight + w[i] <= capacity;
+                    if (current[i]) {
+                        weight += w[i];
+                        value += v[i];
+                    }
+                    i++;
+                    continue;
+                }
+            } else if (value > bestValue) {
+                bestValue = value;
+                System.arraycopy(current, 0, best, 0, n);
+            }
+
+            // backtrack to the last taken item and explore the branch without it
+            int j = i - 1;
+            while (j >= 0 && !current[j]) j--;
+            if (j < 0) break;
+            current[j] = false;
+            weight -= w[j];
+            value -= v[j];
+            i = j + 1;
+        }
+
+        final BitSet selected = new BitSet(weights.length);
+        for (int k = 0; k < n; k++) if (best[k]) selected.set(order[k]);
+        return selected;
+    }
+
+    /**
+     * Compute the value of the fractional relaxation of the remaining items
+     */
+    private static double upperBound(int[] w, double[] v, int from, double value, long weight, int capacity) {
+        double bound = value;
+        long room = capacity - weight;
+        for (int i = from; i < w.length; i++) {
+            if (w[i] <= room) {
+                room -= w[i];
+                bound += v[i];
+            } else {
+                return bound + v[i] * room / w[i];
+            }
+        }
+        return bound;
+    }
+}
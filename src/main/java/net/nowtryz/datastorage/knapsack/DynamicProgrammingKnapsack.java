@@ -0,0 +1,57 @@
+package net.nowtryz.datastorage.knapsack;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Pseudo-polynomial solver of the 0-1 knapsack problem. It runs in <i>O(n &times; W)</i> time using a single row of
+ * best values over capacities and a bitset of <i>n &times; (W + 1)</i> bits remembering which item improved each cell.
+ */
+public class DynamicProgrammingKnapsack extends AbstractKnapsack {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected BitSet solveFinite(int[] weights, double[] values, int capacity) {
+        final int n = weights.length;
+        final int width = capacity + 1;
+        final double[] best = new double[width];
+        final BitSet taken = new BitSet(n * width);
+
+        for (int i = 0; i < n; i++) {
+            final int weight = weights[i];
+            final double value = values[i];
+            if (weight > capacity || !(value > 0)) continue;
+
+            // iterate backward so each item is counted at most once
+            for (int w = capacity; w >= weight; w--) {
+                double candidate = best[w - weight] + value;
+                if (candidate > best[w]) {
+                    best[w] = candidate;
+                    taken.set(i * width + w);
+                }
+            }
+        }
+
+        // walk back through the decisions from the full capacity
+        final BitSet selected = new BitSet(n);
+        int w = capacity;
+        for (int i = n - 1; i >= 0; i--) {
+            if (taken.get(i * width + w)) {
+                selected.set(i);
+                w -= weights[i];
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Get the number of cells the solver needs for the given problem
+     * @param items the number of items
+     * @param capacity the capacity of the knapsack
+     * @return the size of the decision table
+     */
+    static long cells(int items, int capacity) {
+        return (long) items * (capacity + 1L);
+    }
+}
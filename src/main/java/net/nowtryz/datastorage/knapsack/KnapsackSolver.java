@@ -0,0 +1,27 @@
+package net.nowtryz.datastorage.knapsack;
+
+import java.util.BitSet;
+
+/**
+ * Solver of the 0-1 knapsack problem: pick some of the given items, with maximal total value, while the total weight
+ * of the picked items does not exceed the capacity of the knapsack.
+ */
+public interface KnapsackSolver {
+    /**
+     * Find the best selection of items
+     * @param weights the weight of each item, must be positive
+     * @param values the value of each item
+     * @param capacity the max weight of the knapsack
+     * @return the indexes of the selected items
+     */
+    BitSet solve(int[] weights, double[] values, int capacity);
+
+    /**
+     * Get a solver that picks the best suited algorithm depending on the size of the problem
+     * @return a new adaptive solver
+     * @see AdaptiveKnapsack
+     */
+    static KnapsackSolver automatic() {
+        return new AdaptiveKnapsack();
+    }
+}
@@ -0,0 +1,216 @@
+package net.nowtryz.datastorage.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Access frequencies of data by users, estimated from a stream of access events with a count-min sketch. Each event
+ * increments one counter per row of the sketch, chosen by hashing the (user, data) pair, and the frequency of a pair is
+ * the smallest of its counters: it can be overestimated by collisions, never underestimated. Memory only depends on
+ * the size of the sketch, not on the number of events or pairs.
+ *
+ * <p>Counters are spread over stripes, each thread recording in its own stripe with atomic updates only, so
+ * recording never blocks. Estimates sum the stripes. Frequencies decay exponentially: every {@link
+ * #setDecayInterval(long) interval} of events over all stripes, a new epoch begins and counters are halved so recent
+ * accesses weigh more than old ones. Counters are tagged with the epoch of their last update and halved lazily, once
+ * per elapsed epoch, when they are next read or updated, so a decay costs the same whatever the size of the sketch.
+ * Counters saturate at about 10<sup>12</sup> accesses.
+ *
+ * <p>Set on a graph with {@link net.nowtryz.datastorage.graph.AbstractDataGraph#setAccessStatistics(AccessStatistics)
+ * setAccessStatistics}, the statistics weight each interested user in the score of a data by how often it reads it.
+ */
+public class AccessStatistics {
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x27D4EB2F165667C5L, 0x94D049BB133111EBL
+    };
+    // counters of a stripe are padded so stripes don't share cache lines
+    private static final int PADDING = 8;
+    // a counter holds the epoch of its last update in its high bits and its count in the low ones
+    private static final int COUNT_BITS = 40;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long EPOCH_MASK = (1L << Long.SIZE - COUNT_BITS) - 1;
+    // every counter is swept at least once every 2^SWEEP_BITS epochs, well before the epoch tags wrap around
+    private static final int SWEEP_BITS = 20;
+
+    private final int width;
+    private final int depth;
+    private final int stripes;
+    private final AtomicLongArray counters;
+    private final AtomicLongArray events;
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicLong nextDecay;
+    private final AtomicInteger sweep = new AtomicInteger();
+    private volatile long decayInterval;
+
+    /**
+     * Create statistics with a sketch of 4 rows of 16384 counters, halved every million events
+     */
+    public AccessStatistics() {
+        this(1 << 14, 4);
+    }
+
+    /**
+     * Create statistics halved every million events
+     * @param width the number of counters per row, rounded up to a power of two. The error of an estimate is at most
+     *              about 2.7 / width of all events
+     * @param depth the number of rows, at most 8. An estimate exceeds this error with a probability of about
+     *              e<sup>-depth</sup>
+     */
+    public AccessStatistics(int width, int depth) {
+        if (width <= 0 || depth <= 0 || depth > SEEDS.length) throw new IllegalArgumentException("Invalid sketch size");
+        this.width = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.depth = depth;
+        this.stripes = Integer.highestOneBit(Math.min(16, Runtime.getRuntime().availableProcessors()));
+        this.counters = new AtomicLongArray(stripes * (this.width * depth + PADDING));
+        this.events = new AtomicLongArray(stripes * PADDING);
+        this.decayInterval = 1_000_000;
+        this.nextDecay = new AtomicLong(decayInterval);
+    }
+
+    /**
+     * Set how often frequencies are halved
+     * @param events the number of events between two decays, 0 to never decay automatically
+     */
+    public void setDecayInterval(long events) {
+        if (events < 0) throw new IllegalArgumentException("The interval must be positive");
+        this.decayInterval = events;
+        this.nextDecay.set(this.recorded() + events);
+    }
+
+    /**
+     * Record an access of a user to a data
+     * @param user the id of the user
+     * @param data the id of the data
+     */
+    public void record(int user, int data) {
+        this.record(user, data, 1);
+    }
+
+    /**
+     * Record several accesses of a user to a data
+     * @param user the id of the user
+     * @param data the id of the data
+     * @param count the number of accesses
+     */
+    public void record(int user, int data, long count) {
+        if (count <= 0) return;
+        final int stripe = (int) Thread.currentThread().getId() & (stripes - 1);
+        final int base = this.stripeOffset(stripe);
+        final long key = key(user, data);
+        for (int row = 0; row < depth; row++) this.increment(base + row * width + this.index(key, row), count);
+        events.addAndGet(stripe * PADDING, count);
+
+        final long interval = decayInterval;
+        if (interval <= 0) return;
+        final long recorded = this.recorded(), next = nextDecay.get();
+        if (recorded >= next && nextDecay.compareAndSet(next, recorded + interval)) this.decay();
+    }
+
+    /**
+     * Estimate how many times a user accessed a data, recent accesses counting more than old ones
+     * @param user the id of the user
+     * @param data the id of the data
+     * @return the estimated number of accesses, never less than the decayed number of recorded accesses
+     */
+    public long estimate(int user, int data) {
+        final long key = key(user, data);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            final int index = row * width + this.index(key, row);
+            long sum = 0;
+            for (int stripe = 0; stripe < stripes; stripe++) sum += this.count(this.stripeOffset(stripe) + index);
+            estimate = Math.min(estimate, sum);
+        }
+        return estimate;
+    }
+
+    /**
+     * Get the weight of a user in the score of a data: one plus its estimated number of accesses, so users that never
+     * accessed a data they are interested in still count a little
+     * @param user the id of the user
+     * @param data the id of the data
+     * @return the weight of the user, at least 1
+     */
+    public double weight(int user, int data) {
+        return 1 + this.estimate(user, data);
+    }
+
+    /**
+     * Halve all frequencies by starting a new epoch. Counters are only halved when they are next read or updated.
+     */
+    public void decay() {
+        epoch.incrementAndGet();
+        // reset a slice of the counters that fully decayed, so epoch tags are never old enough to wrap around
+        final int length = counters.length();
+        final int slice = (length >> SWEEP_BITS) + 1;
+        final int from = sweep.getAndUpdate(i -> (i + slice) % length);
+        for (int k = 0; k < slice; k++) {
+            final int i = (from + k) % length;
+            final long counter = counters.get(i);
+            if (counter != 0 && this.age(counter) >= COUNT_BITS) counters.compareAndSet(i, counter, 0);
+        }
+    }
+
+    /**
+     * Forget all recorded accesses
+     */
+    public void clear() {
+        for (int stripe = 0; stripe < stripes; stripe++) events.set(stripe * PADDING, 0);
+        for (int i = 0; i < counters.length(); i++) counters.set(i, 0);
+        nextDecay.set(decayInterval);
+    }
+
+    private long recorded() {
+        long sum = 0;
+        for (int stripe = 0; stripe < stripes; stripe++) sum += events.get(stripe * PADDING);
+        return sum;
+    }
+
+    private void increment(int i, long count) {
+        long counter, updated;
+        do {
+            counter = counters.get(i);
+            // the epoch is read after the counter, so it is never older than the tag of the counter
+            final long current = epoch.get();
+            final long sum = decayed(counter, current) + count;
+            updated = (current & EPOCH_MASK) << COUNT_BITS | (sum < 0 || sum > COUNT_MASK ? COUNT_MASK : sum);
+        } while (!counters.compareAndSet(i, counter, updated));
+    }
+
+    private long count(int i) {
+        final long counter = counters.get(i);
+        return decayed(counter, epoch.get());
+    }
+
+    private long age(long counter) {
+        return age(counter, epoch.get());
+    }
+
+    private static long age(long counter, long epoch) {
+        return epoch - (counter >>> COUNT_BITS) & EPOCH_MASK;
+    }
+
+    private static long decayed(long counter, long epoch) {
+        final long age = age(counter, epoch);
+        return age >= COUNT_BITS ? 0 : (counter & COUNT_MASK) >>> age;
+    }
+
+    private int stripeOffset(int stripe) {
+        return stripe * (width * depth + PADDING);
+    }
+
+    private static long key(int user, int data) {
+        return (long) user << 32 | data & 0xFFFFFFFFL;
+    }
+
+    private int index(long key, int row) {
+        // murmur3 finalizer, each row with its own seed
+        long hash = key ^ SEEDS[row];
+        hash = (hash ^ hash >>> 33) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ hash >>> 33) * 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return (int) hash & (width - 1);
+    }
+}
@@ -0,0 +1,149 @@
+package net.nowtryz.datastorage.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Distribution of recorded values, counted in buckets of fixed bounds. Recording is lock free and can be done from
+ * several threads.
+ */
+public class Histogram {
+    private final long[] bounds;
+    private final AtomicLongArray counts;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    /**
+     * Create a histogram with the given bucket bounds
+     * @param bounds the inclusive upper bounds of the buckets, in ascending order. Greater values are counted in an
+     *               extra overflow bucket
+     */
+    public Histogram(long... bounds) {
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) throw new IllegalArgumentException("Bounds must be ascending");
+        }
+        this.bounds = bounds.clone();
+        this.counts = new AtomicLongArray(bounds.length + 1);
+    }
+
+    /**
+     * Create a histogram whose buckets double in width, suited for durations and sizes
+     * @param max the highest bound
+     * @return the histogram with bounds 1, 2, 4... up to max
+     */
+    public static Histogram exponential(long max) {
+        return new Histogram(IntStream.range(0, 63)
+                .mapToLong(i -> 1L << i)
+                .filter(bound -> bound <= max)
+                .toArray());
+    }
+
+    /**
+     * Create a histogram whose buckets have the same width, suited for ratios
+     * @param step the width of a bucket
+     * @param max the highest bound
+     * @return the histogram with bounds step, 2 * step... up to max
+     */
+    public static Histogram linear(long step, long max) {
+        if (step <= 0) throw new IllegalArgumentException("The step must be positive");
+        return new Histogram(IntStream.rangeClosed(1, (int) (max / step)).mapToLong(i -> i * step).toArray());
+    }
+
+    /**
+     * Record a value
+     * @param value the value
+     */
+    public void record(long value) {
+        int bucket = Arrays.binarySearch(bounds, value);
+        counts.incrementAndGet(bucket < 0 ? -bucket - 1 : bucket);
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Get the number of recorded values
+     * @return the count of values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Get the sum of the recorded values
+     * @return the total
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Get the mean of the recorded values
+     * @return the mean, 0 if nothing has been recorded
+     */
+    public double getMean() {
+        long n = this.getCount();
+        return n == 0 ? 0 : (double) this.getSum() / n;
+    }
+
+    /**
+     * Get the greatest recorded value
+     * @return the max, 0 if nothing has been recorded
+     */
+    public long getMax() {
+        long value = max.get();
+        return value == Long.MIN_VALUE ? 0 : value;
+    }
+
+    /**
+     * Estimate a percentile of the recorded values, as the upper bound of the bucket it falls in
+     * @param quantile the quantile, between 0 and 1
+     * @return the bound of the bucket holding the percentile, the max for the overflow bucket
+     */
+    public long getPercentile(double quantile) {
+        if (quantile < 0 || quantile > 1) throw new IllegalArgumentException("The quantile must be between 0 and 1");
+        long rank = (long) Math.ceil(quantile * this.getCount());
+        long seen = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            seen += counts.get(i);
+            if (seen >= rank && seen > 0) return Math.min(bounds[i], this.getMax());
+        }
+        return this.getMax();
+    }
+
+    /**
+     * Get the number of values counted in each bucket
+     * @return the counts, indexed like the bounds, followed by the overflow bucket
+     */
+    public long[] getCounts() {
+        return IntStream.range(0, counts.length()).mapToLong(counts::get).toArray();
+    }
+
+    /**
+     * Get the upper bounds of the buckets
+     * @return the bounds
+     */
+    public long[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * Forget all recorded values
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.1f, p50=%d, p99=%d, max=%d",
+                this.getCount(), this.getMean(), this.getPercentile(.5), this.getPercentile(.99), this.getMax());
+    }
+}
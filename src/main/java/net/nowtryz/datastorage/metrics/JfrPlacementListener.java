@@ -0,0 +1,162 @@
+package net.nowtryz.datastorage.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.graph.AbstractDataGraph;
+
+/**
+ * Listener exporting placements as Java Flight Recorder events, to be recorded along with the JVM events of a running
+ * application. Events are only built when they are enabled in the recording, they are all disabled by default except
+ * placements and knapsack solves. Requires a JVM shipping JFR (8u262 or later).
+ */
+public class JfrPlacementListener implements PlacementListener {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void placementCompleted(AbstractDataGraph graph, long nanos) {
+        PlacementEvent event = new PlacementEvent();
+        if (!event.isEnabled()) return;
+        event.graph = graph.getClass().getSimpleName();
+        event.elapsed = nanos;
+        event.commit();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void roundCompleted(int round, int data, int overweightNodes) {
+        RoundEvent event = new RoundEvent();
+        if (!event.isEnabled()) return;
+        event.round = round;
+        event.data = data;
+        event.overweightNodes = overweightNodes;
+        event.commit();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void knapsackSolved(SystemNode node, int items, long nanos) {
+        KnapsackEvent event = new KnapsackEvent();
+        if (!event.isEnabled()) return;
+        event.node = node.getId();
+        event.items = items;
+        event.capacity = node.getCapacity();
+        event.elapsed = nanos;
+        event.commit();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dataEvicted(SystemNode node, int data) {
+        EvictionEvent event = new EvictionEvent();
+        if (!event.isEnabled()) return;
+        event.node = node.getId();
+        event.data = data;
+        event.commit();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void distancesComputed(int user, long nanos) {
+        SearchEvent event = new SearchEvent();
+        if (!event.isEnabled()) return;
+        event.user = user;
+        event.elapsed = nanos;
+        event.commit();
+    }
+
+    @Name("net.nowtryz.datastorage.Placement")
+    @Label("Placement")
+    @Description("Placement of the data of a graph")
+    @Category("Data Storage")
+    @StackTrace(false)
+    static class PlacementEvent extends Event {
+        @Label("Graph")
+        String graph;
+
+        @Label("Elapsed Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    @Name("net.nowtryz.datastorage.Round")
+    @Label("Placement Round")
+    @Description("Round of an iterative placement")
+    @Category("Data Storage")
+    @StackTrace(false)
+    @Enabled(false)
+    static class RoundEvent extends Event {
+        @Label("Round")
+        int round;
+
+        @Label("Placed Data")
+        int data;
+
+        @Label("Overweight Nodes")
+        int overweightNodes;
+    }
+
+    @Name("net.nowtryz.datastorage.Knapsack")
+    @Label("Knapsack Solve")
+    @Description("Best arrangement of an overweight node")
+    @Category("Data Storage")
+    @StackTrace(false)
+    static class KnapsackEvent extends Event {
+        @Label("Node")
+        int node;
+
+        @Label("Items")
+        int items;
+
+        @Label("Capacity")
+        int capacity;
+
+        @Label("Elapsed Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    @Name("net.nowtryz.datastorage.Eviction")
+    @Label("Eviction")
+    @Description("Data evicted from an overweight node")
+    @Category("Data Storage")
+    @StackTrace(false)
+    @Enabled(false)
+    static class EvictionEvent extends Event {
+        @Label("Node")
+        int node;
+
+        @Label("Evicted Data")
+        int data;
+    }
+
+    @Name("net.nowtryz.datastorage.DistanceSearch")
+    @Label("Distance Search")
+    @Description("Shortest path search from a user to all system nodes")
+    @Category("Data Storage")
+    @StackTrace(false)
+    @Enabled(false)
+    static class SearchEvent extends Event {
+        @Label("User Ordinal")
+        int user;
+
+        @Label("Elapsed Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+}
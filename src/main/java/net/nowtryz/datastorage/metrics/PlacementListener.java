@@ -0,0 +1,68 @@
+package net.nowtryz.datastorage.metrics;
+
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.graph.AbstractDataGraph;
+
+/**
+ * Receives what happens inside a placement. All methods do nothing by default, so an implementation only overrides
+ * what it is interested in. Placements may run on several threads, implementations must be thread safe.
+ *
+ * @see AbstractDataGraph#setListener(PlacementListener)
+ */
+public interface PlacementListener {
+    /**
+     * A listener ignoring everything, used when no listener is set
+     */
+    PlacementListener NONE = new PlacementListener() { };
+
+    /**
+     * Called before a graph starts to place data
+     * @param graph the graph placing data
+     * @param data the number of data to place, -1 if data are streamed
+     */
+    default void placementStarted(AbstractDataGraph graph, int data) { }
+
+    /**
+     * Called once a placement has ended, successfully or not
+     * @param graph the graph that placed data
+     * @param nanos the duration of the placement in nanoseconds
+     */
+    default void placementCompleted(AbstractDataGraph graph, long nanos) { }
+
+    /**
+     * Called at the end of each round of an iterative placement
+     * @param round the index of the round, starting at 0
+     * @param data the number of data placed during this round
+     * @param overweightNodes the number of nodes that exceeded their capacity during this round
+     */
+    default void roundCompleted(int round, int data, int overweightNodes) { }
+
+    /**
+     * Called after the knapsack problem of an overweight node has been solved
+     * @param node the overweight node
+     * @param items the number of data competing for the node
+     * @param nanos the duration of the solve in nanoseconds
+     */
+    default void knapsackSolved(SystemNode node, int items, long nanos) { }
+
+    /**
+     * Called when data are evicted from a node to be placed again
+     * @param node the node data are evicted from
+     * @param data the number of evicted data
+     */
+    default void dataEvicted(SystemNode node, int data) { }
+
+    /**
+     * Called when the distances from a user to all system nodes have been computed with a shortest path search
+     * @param user the ordinal of the user
+     * @param nanos the duration of the search in nanoseconds
+     */
+    default void distancesComputed(int user, long nanos) { }
+
+    /**
+     * Called once per user whose distances were kept from the previous distances of the graph when its topology
+     * changed, instead of being computed again
+     * @param user the ordinal of the user
+     */
+    default void distancesReused(int user) { }
+}
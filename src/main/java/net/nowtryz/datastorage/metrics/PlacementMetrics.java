@@ -0,0 +1,205 @@
+package net.nowtryz.datastorage.metrics;
+
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.graph.AbstractDataGraph;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener aggregating placements into counters and histograms. One instance can be shared by several graphs and read
+ * while placements are running. Durations are recorded in microseconds and fill ratios in percent.
+ */
+public class PlacementMetrics implements PlacementListener {
+    private final LongAdder placements = new LongAdder();
+    private final LongAdder rounds = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final Histogram placementTime = Histogram.exponential(1L << 40);
+    private final Histogram evictionsPerNode = Histogram.exponential(1 << 20);
+    private final Histogram knapsackItems = Histogram.exponential(1 << 24);
+    private final Histogram knapsackTime = Histogram.exponential(1L << 40);
+    private final Histogram searchTime = Histogram.exponential(1L << 40);
+    private final Histogram fillRatio = Histogram.linear(5, 100);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void placementCompleted(AbstractDataGraph graph, long nanos) {
+        placements.increment();
+        placementTime.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        graph.vertexSet().stream()
+                .filter(SystemNode.class::isInstance)
+                .map(SystemNode.class::cast)
+                .filter(node -> node.getCapacity() > 0)
+                .forEach(node -> fillRatio.record(100L * node.getUsedSpace() / node.getCapacity()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void roundCompleted(int round, int data, int overweightNodes) {
+        rounds.increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void knapsackSolved(SystemNode node, int items, long nanos) {
+        knapsackItems.record(items);
+        knapsackTime.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dataEvicted(SystemNode node, int data) {
+        evictions.add(data);
+        evictionsPerNode.record(data);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void distancesComputed(int user, long nanos) {
+        searches.increment();
+        searchTime.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void distancesReused(int user) {
+        cacheHits.increment();
+    }
+
+    /**
+     * Get the number of completed placements
+     * @return the count of placements
+     */
+    public long getPlacements() {
+        return placements.sum();
+    }
+
+    /**
+     * Get the number of rounds of all placements, placements that are not iterative do not count any round
+     * @return the count of rounds
+     */
+    public long getRounds() {
+        return rounds.sum();
+    }
+
+    /**
+     * Get the number of data evicted from overweight nodes
+     * @return the count of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the number of shortest path searches run to compute distances
+     * @return the count of searches
+     */
+    public long getSearches() {
+        return searches.sum();
+    }
+
+    /**
+     * Get the share of rows of distances kept from previous distances rather than computed with a search
+     * @return the hit rate, between 0 and 1
+     */
+    public double getCacheHitRate() {
+        long hits = cacheHits.sum();
+        long total = hits + searches.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Get the duration of placements
+     * @return the histogram of durations, in microseconds
+     */
+    public Histogram getPlacementTime() {
+        return placementTime;
+    }
+
+    /**
+     * Get the number of data evicted at once from a node
+     * @return the histogram of evictions per node
+     */
+    public Histogram getEvictionsPerNode() {
+        return evictionsPerNode;
+    }
+
+    /**
+     * Get the number of items of the solved knapsack problems
+     * @return the histogram of knapsack sizes
+     */
+    public Histogram getKnapsackItems() {
+        return knapsackItems;
+    }
+
+    /**
+     * Get the duration of knapsack solves
+     * @return the histogram of durations, in microseconds
+     */
+    public Histogram getKnapsackTime() {
+        return knapsackTime;
+    }
+
+    /**
+     * Get the duration of shortest path searches
+     * @return the histogram of durations, in microseconds
+     */
+    public Histogram getSearchTime() {
+        return searchTime;
+    }
+
+    /**
+     * Get the fill ratio of nodes at the end of placements
+     * @return the histogram of used space over capacity, in percent
+     */
+    public Histogram getFillRatio() {
+        return fillRatio;
+    }
+
+    /**
+     * Forget everything recorded so far
+     */
+    public void reset() {
+        placements.reset();
+        rounds.reset();
+        evictions.reset();
+        searches.reset();
+        cacheHits.reset();
+        placementTime.reset();
+        evictionsPerNode.reset();
+        knapsackItems.reset();
+        knapsackTime.reset();
+        searchTime.reset();
+        fillRatio.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "PlacementMetrics(" +
+                "placements=" + this.getPlacements() +
+                ", rounds=" + this.getRounds() +
+                ", evictions=" + this.getEvictions() +
+                ", searches=" + this.getSearches() +
+                String.format(", cacheHitRate=%.3f", this.getCacheHitRate()) +
+                ", placementTime=[" + placementTime + ']' +
+                ", knapsackItems=[" + knapsackItems + ']' +
+                ", knapsackTime=[" + knapsackTime + ']' +
+                ", searchTime=[" + searchTime + ']' +
+                ", fillRatio=[" + fillRatio + ']' +
+                ')';
+    }
+}
@@ -10,4 +10,37 @@ public class ArraysUtils {
         for (int i : array) if (i == value) return true;
         return false;
     }
+
+    /**
+     * Find the index of the greatest value of an array
+     * @param array the array to search
+     * @return the index of the first greatest value, -1 if the array is empty
+     */
+    public static int indexOfMax(double[] array) {
+        return indexOfMax(array, array.length);
+    }
+
+    /**
+     * Find the index of the greatest value among the first values of an array
+     * @param array the array to search
+     * @param length the number of values to consider
+     * @return the index of the first greatest value, -1 if length is 0
+     */
+    public static int indexOfMax(double[] array, int length) {
+        int best = -1;
+        for (int i = 0; i < length; i++) if (best < 0 || array[i] > array[best]) best = i;
+        return best;
+    }
+
+    /**
+     * Get the buffer the current thread keeps in the given thread local, replaced by a larger one when it is too short
+     * @param buffers the thread local holding the buffer of each thread
+     * @param length the min length of the buffer
+     * @return a buffer of at least the given length, with its previous content
+     */
+    public static double[] bufferOf(ThreadLocal<double[]> buffers, int length) {
+        double[] buffer = buffers.get();
+        if (buffer == null || buffer.length < length) buffers.set(buffer = new double[length]);
+        return buffer;
+    }
 }
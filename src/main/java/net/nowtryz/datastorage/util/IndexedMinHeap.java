@@ -0,0 +1,135 @@
+package net.nowtryz.datastorage.util;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of int elements in <i>[0, capacity)</i> keyed by doubles, supporting key decrease. Everything is
+ * stored in primitive arrays allocated once, so a heap can be reused across searches without allocating.
+ */
+public class IndexedMinHeap {
+    private final int[] heap;
+    private final int[] positions;
+    private final double[] keys;
+    private int size = 0;
+
+    /**
+     * Create an empty heap
+     * @param capacity the upper bound (exclusive) of the elements
+     */
+    public IndexedMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        this.keys = new double[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Check whether the heap has no element
+     * @return true if the heap is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Check whether an element is in the heap
+     * @param element the element
+     * @return true if the element is in the heap
+     */
+    public boolean contains(int element) {
+        return positions[element] >= 0;
+    }
+
+    /**
+     * Insert an element or decrease its key if it is already in the heap with a higher key
+     * @param element the element
+     * @param key the key of the element
+     * @return true if the heap changed
+     */
+    public boolean offer(int element, double key) {
+        int position = positions[element];
+        if (position < 0) {
+            heap[size] = element;
+            positions[element] = size;
+            keys[element] = key;
+            this.siftUp(size++);
+            return true;
+        }
+        if (key < keys[element]) {
+            keys[element] = key;
+            this.siftUp(position);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the key of the element with the lowest key
+     * @return the lowest key
+     */
+    public double peekKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * Remove the element with the lowest key
+     * @return the removed element
+     */
+    public int poll() {
+        int top = heap[0];
+        positions[top] = -1;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            this.siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Get the key an element has or last had in the heap
+     * @param element the element
+     * @return its key
+     */
+    public double key(int element) {
+        return keys[element];
+    }
+
+    /**
+     * Remove all elements, in time proportional to the number of elements left
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) positions[heap[i]] = -1;
+        size = 0;
+    }
+
+    private void siftUp(int position) {
+        int element = heap[position];
+        double key = keys[element];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (keys[heap[parent]] <= key) break;
+            heap[position] = heap[parent];
+            positions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = element;
+        positions[element] = position;
+    }
+
+    private void siftDown(int position) {
+        int element = heap[position];
+        double key = keys[element];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) child++;
+            if (key <= keys[heap[child]]) break;
+            heap[position] = heap[child];
+            positions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = element;
+        positions[element] = position;
+    }
+}
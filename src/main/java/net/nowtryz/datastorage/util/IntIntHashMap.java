@@ -0,0 +1,204 @@
+package net.nowtryz.datastorage.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Open addressing hash map from primitive int keys to primitive int values. Collisions are resolved with linear probing
+ * and removals shift following entries back, so no tombstone is ever left in the table.
+ *
+ * <p>{@link Integer#MIN_VALUE} is used to mark free slots and cannot be used as a key.
+ */
+public class IntIntHashMap {
+    private static final int FREE = Integer.MIN_VALUE;
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private int[] keys;
+    private int[] values;
+    private int size = 0;
+    private int mask;
+    private final IntSet keySet = new KeySet();
+
+    /**
+     * Create an empty map
+     */
+    public IntIntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an empty map
+     * @param expectedSize the number of entries the map should hold without resizing
+     */
+    public IntIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, expectedSize * 2 - 1)) << 1;
+        this.allocate(capacity);
+    }
+
+    /**
+     * Create a map holding the same entries as another one
+     * @param other the map to copy
+     */
+    public IntIntHashMap(IntIntHashMap other) {
+        this.keys = other.keys.clone();
+        this.values = other.values.clone();
+        this.size = other.size;
+        this.mask = other.mask;
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new int[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, FREE);
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private int indexOf(int key) {
+        // free slots would match the marker
+        if (key == FREE) return -1;
+        for (int i = this.slot(key); ; i = (i + 1) & mask) {
+            if (keys[i] == key) return i;
+            if (keys[i] == FREE) return -1;
+        }
+    }
+
+    /**
+     * Associate a value to a key
+     * @param key the key
+     * @param value the value
+     * @param absent the value to return if the key wasn't in the map
+     * @return the previous value associated to the key or {@code absent} if there was none
+     */
+    public int put(int key, int value, int absent) {
+        if (key == FREE) throw new IllegalArgumentException("Integer.MIN_VALUE cannot be used as a key");
+        int i = this.slot(key);
+        while (keys[i] != FREE) {
+            if (keys[i] == key) {
+                int previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        // keep the load factor under 1/2
+        if (++size * 2 > keys.length) this.rehash(keys.length << 1);
+        return absent;
+    }
+
+    /**
+     * Get the value associated to a key
+     * @param key the key
+     * @param absent the value to return if the key isn't in the map
+     * @return the value associated to the key or {@code absent}
+     */
+    public int get(int key, int absent) {
+        int i = this.indexOf(key);
+        return i < 0 ? absent : values[i];
+    }
+
+    /**
+     * Check whether a key is in the map
+     * @param key the key
+     * @return true if the key is in the map
+     */
+    public boolean containsKey(int key) {
+        return this.indexOf(key) >= 0;
+    }
+
+    /**
+     * Remove a key from the map
+     * @param key the key to remove
+     * @param absent the value to return if the key wasn't in the map
+     * @return the value that was associated to the key or {@code absent}
+     */
+    public int remove(int key, int absent) {
+        int gap = this.indexOf(key);
+        if (gap < 0) return absent;
+        int removed = values[gap];
+
+        // shift back following entries of the cluster that can be moved in the gap
+        for (int j = (gap + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+            int ideal = this.slot(keys[j]);
+            if (((j - ideal) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = FREE;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Get the number of entries
+     * @return the number of entries in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    /**
+     * Get a read-only view of the keys. The view reflects later changes of the map.
+     * @return the keys of the map
+     */
+    public IntSet keys() {
+        return keySet;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        this.allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == FREE) continue;
+            int j = this.slot(oldKeys[i]);
+            while (keys[j] != FREE) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+
+    private class KeySet implements IntSet {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(int value) {
+            return containsKey(value);
+        }
+
+        @Override
+        public void forEach(IntConsumer action) {
+            int[] table = keys;
+            for (int key : table) if (key != FREE) action.accept(key);
+        }
+
+        @Override
+        public int[] toArray() {
+            int[] table = keys;
+            int[] result = new int[size];
+            int n = 0;
+            for (int key : table) if (key != FREE) result[n++] = key;
+            return result;
+        }
+    }
+}
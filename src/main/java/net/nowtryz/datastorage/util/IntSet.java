@@ -0,0 +1,50 @@
+package net.nowtryz.datastorage.util;
+
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Read-only set of primitive ints
+ */
+public interface IntSet {
+    /**
+     * Get the number of elements of the set
+     * @return the number of elements
+     */
+    int size();
+
+    /**
+     * Check whether the set has no element
+     * @return true if the set is empty
+     */
+    default boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    /**
+     * Check whether the given value is an element of the set
+     * @param value the value to look for
+     * @return true if the set contains the value
+     */
+    boolean contains(int value);
+
+    /**
+     * Call the given action with each element of the set
+     * @param action the action to perform
+     */
+    void forEach(IntConsumer action);
+
+    /**
+     * Copy the elements of the set in a new array
+     * @return an array with all elements of the set
+     */
+    int[] toArray();
+
+    /**
+     * Get a stream of the elements of the set
+     * @return a stream of the elements
+     */
+    default IntStream stream() {
+        return IntStream.of(this.toArray());
+    }
+}
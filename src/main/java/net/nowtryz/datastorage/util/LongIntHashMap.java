@@ -0,0 +1,107 @@
+package net.nowtryz.datastorage.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive long keys to primitive int values, with linear probing. Entries cannot be
+ * removed, the map is meant for lookup tables built once.
+ *
+ * <p>{@link Long#MIN_VALUE} is used to mark free slots and cannot be used as a key.
+ */
+public class LongIntHashMap {
+    private static final long FREE = Long.MIN_VALUE;
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+    private int mask;
+
+    /**
+     * Create an empty map
+     */
+    public LongIntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an empty map
+     * @param expectedSize the number of entries the map should hold without resizing
+     */
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, expectedSize * 2 - 1)) << 1;
+        this.allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, FREE);
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Associate a value to a key
+     * @param key the key
+     * @param value the value
+     * @param absent the value to return if the key wasn't in the map
+     * @return the previous value associated to the key or {@code absent} if there was none
+     */
+    public int put(long key, int value, int absent) {
+        if (key == FREE) throw new IllegalArgumentException("Long.MIN_VALUE cannot be used as a key");
+        int i = this.slot(key);
+        while (keys[i] != FREE) {
+            if (keys[i] == key) {
+                int previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        // keep the load factor under 1/2
+        if (++size * 2 > keys.length) this.rehash(keys.length << 1);
+        return absent;
+    }
+
+    /**
+     * Get the value associated to a key
+     * @param key the key
+     * @param absent the value to return if the key isn't in the map
+     * @return the value associated to the key or {@code absent}
+     */
+    public int get(long key, int absent) {
+        for (int i = this.slot(key); ; i = (i + 1) & mask) {
+            if (keys[i] == key) return key == FREE ? absent : values[i];
+            if (keys[i] == FREE) return absent;
+        }
+    }
+
+    /**
+     * Get the number of entries
+     * @return the number of entries in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        this.allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == FREE) continue;
+            int j = this.slot(oldKeys[i]);
+            while (keys[j] != FREE) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package net.nowtryz.datastorage.entity;
+
+import net.nowtryz.datastorage.util.IntSet;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SystemNodeTest {
+
+    @Test
+    public void tracksUsedSpace() {
+        final SystemNode node = new SystemNode(10);
+        node.addToStorage(1, 4);
+        node.addToStorage(2, 5);
+        // adding a data twice does not count it twice
+        node.addToStorage(2, 5);
+        assertEquals(9, node.getUsedSpace());
+        assertTrue(node.hasEnoughSpace(1));
+        assertFalse(node.hasEnoughSpace(2));
+
+        node.addToStorage(3, 2);
+        assertTrue(node.isOverweight());
+        node.removeFromStorage(1);
+        node.removeFromStorage(1);
+        assertEquals(7, node.getUsedSpace());
+    }
+
+    @Test
+    public void concurrentAdditionsRespectTheCapacity() throws InterruptedException {
+        final DataCatalog catalog = new DataCatalog();
+        final SystemNode node = new SystemNode(100);
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final Data[] data = new Data[1000];
+            for (int i = 0; i < data.length; i++) data[i] = catalog.create(3);
+            threads[t] = new Thread(() -> {
+                for (Data item : data) node.tryAddToStorage(item);
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        assertFalse(node.isOverweight());
+        assertEquals(99, node.getUsedSpace());
+        assertFalse(node.tryAddToStorage(catalog.get(0)));
+    }
+
+    @Test
+    public void initialDataAreSizedFromTheirCatalog() {
+        final DataCatalog catalog = new DataCatalog();
+        final Data small = catalog.create(3), large = catalog.create(8);
+        final SystemNode node = new SystemNode(20, catalog, new int[]{small.getId(), large.getId()});
+        assertEquals(11, node.getUsedSpace());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void initialDataMustBeInTheCatalog() {
+        new SystemNode(20, new DataCatalog(), new int[]{0});
+    }
+
+    @Test
+    public void dataIsASnapshot() {
+        final SystemNode node = new SystemNode(100);
+        node.addToStorage(1, 1);
+        final IntSet data = node.getData();
+        node.addToStorage(2, 1);
+        node.removeFromStorage(1);
+
+        assertEquals(1, data.size());
+        assertTrue(data.contains(1));
+        assertFalse(data.contains(2));
+    }
+
+    @Test
+    public void dataIdsCanBeReadWithoutASnapshot() {
+        final SystemNode node = new SystemNode(100);
+        for (int id = 0; id < 10; id++) node.addToStorage(id, 1);
+        node.removeFromStorage(4);
+
+        final int[] ids = node.getDataIds();
+        Arrays.sort(ids);
+        assertArrayEquals(new int[]{0, 1, 2, 3, 5, 6, 7, 8, 9}, ids);
+        final int[] sum = {0};
+        node.forEachData(id -> sum[0] += id);
+        assertEquals(41, sum[0]);
+    }
+
+    @Test
+    public void dataCanBeReadWhileTheNodeIsFilled() throws InterruptedException {
+        final SystemNode node = new SystemNode(Integer.MAX_VALUE);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread writer = new Thread(() -> {
+            for (int id = 0; id < 200_000; id++) {
+                node.addToStorage(id, 1);
+                if (id % 3 == 0) node.removeFromStorage(id / 2);
+            }
+        });
+        writer.start();
+        try {
+            while (writer.isAlive()) {
+                IntSet data = node.getData();
+                if (data.toArray().length != data.size()) throw new AssertionError("Torn snapshot");
+                final int[] ids = node.getDataIds();
+                final int[] count = {0};
+                node.forEachData(id -> count[0]++);
+                if (ids.length > 200_000 || count[0] > 200_000) throw new AssertionError("Torn storage");
+            }
+        } catch (Throwable e) {
+            failure.set(e);
+        }
+        writer.join();
+        assertNull(failure.get());
+    }
+}
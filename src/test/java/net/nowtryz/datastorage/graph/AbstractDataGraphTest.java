@@ -0,0 +1,141 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.Data;
+import net.nowtryz.datastorage.entity.DataCatalog;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Incremental updates of the placement. Nodes have room for every data, so each data goes on its best node whatever
+ * the order it is placed in, and an incremental update must end where a full placement of the new graph does.
+ */
+public class AbstractDataGraphTest {
+    private static final int NODES = 6;
+    private static final int DATA = 20;
+
+    private final DataCatalog catalog = new DataCatalog();
+    private final OptimizedDataGraph graph = new OptimizedDataGraph(catalog);
+    private final SystemNode[] nodes = new SystemNode[NODES];
+    private final User[] users = new User[10];
+    private final SystemNode[] links = new SystemNode[users.length];
+
+    @Before
+    public void setUp() {
+        final Random random = new Random(5);
+        for (int d = 0; d < DATA; d++) catalog.create(1 + random.nextInt(4));
+        for (int n = 0; n < NODES; n++) {
+            nodes[n] = new SystemNode(100);
+            graph.addVertex(nodes[n]);
+            if (n > 0) graph.addEdge(nodes[n - 1], nodes[n], 1 + random.nextInt(5));
+        }
+        graph.addEdge(nodes[0], nodes[NODES - 1], 4);
+        for (int u = 0; u < users.length; u++) {
+            users[u] = new User(random.ints(4, 0, DATA).distinct().toArray());
+            graph.addVertex(users[u]);
+            links[u] = nodes[random.nextInt(NODES)];
+            graph.addEdge(users[u], links[u], 1 + random.nextInt(3));
+        }
+        graph.placeData();
+    }
+
+    @Test
+    public void userAddedMatchesAFullPlacement() {
+        final User user = new User(0, 1, 2, 3);
+        graph.onUserAdded(user, nodes[2], 1);
+        this.assertMatchesFullPlacement();
+    }
+
+    @Test
+    public void userRemovedMatchesAFullPlacement() {
+        graph.onUserRemoved(users[3]);
+        graph.onUserRemoved(users[7]);
+        this.assertMatchesFullPlacement();
+    }
+
+    @Test
+    public void interestChangedMatchesAFullPlacement() {
+        graph.onInterestChanged(users[0], 5, 6, 7);
+        graph.onInterestChanged(users[4]);
+        this.assertMatchesFullPlacement();
+    }
+
+    @Test
+    public void nodeLinkChangedMatchesAFullPlacement() {
+        graph.onEdgeWeightChanged(nodes[1], nodes[2], 15);
+        graph.onEdgeWeightChanged(nodes[0], nodes[NODES - 1], 1);
+        this.assertMatchesFullPlacement();
+    }
+
+    @Test
+    public void userLinkChangedMatchesAFullPlacement() {
+        graph.onEdgeWeightChanged(users[2], links[2], 30);
+        this.assertMatchesFullPlacement();
+    }
+
+    @Test
+    public void failedUpdateRestoresTheNodes() {
+        final int[][] before = this.storageOfNodes();
+        final Placement published = graph.getPlacement();
+        final Data huge = catalog.create(1000);
+
+        try {
+            graph.onInterestChanged(users[0], huge.getId());
+            fail("The data should not fit anywhere");
+        } catch (NotEnoughSpaceException e) {
+            // expected
+        }
+
+        assertArrayEquals(before, this.storageOfNodes());
+        assertEquals(published, graph.getPlacement());
+        for (int n = 0; n < NODES; n++) assertArrayEquals(before[n], published.getData(nodes[n]).toArray());
+    }
+
+    @Test
+    public void updatesReportTheirMoves() {
+        final Placement before = graph.getPlacement();
+        final PlacementDelta delta = graph.onInterestChanged(users[1], 8, 9);
+        final Placement after = graph.getPlacement();
+
+        assertFalse(delta.isEmpty());
+        for (PlacementDelta.Move move : delta.getMoves()) {
+            if (move.getFrom() != null) {
+                assertTrue(before.getData(move.getFrom()).contains(move.getData()));
+                assertFalse(after.getData(move.getFrom()).contains(move.getData()));
+            }
+            if (move.getTo() != null) {
+                assertFalse(before.getData(move.getTo()).contains(move.getData()));
+                assertTrue(after.getData(move.getTo()).contains(move.getData()));
+            }
+        }
+    }
+
+    /**
+     * Compare what nodes hold after incremental updates with a full placement of the graph as it is now
+     */
+    private void assertMatchesFullPlacement() {
+        final int[][] incremental = this.storageOfNodes();
+        for (SystemNode node : nodes) node.clear();
+        graph.placeData();
+        assertArrayEquals(this.storageOfNodes(), incremental);
+    }
+
+    private int[][] storageOfNodes() {
+        final int[][] storage = new int[NODES][];
+        for (int n = 0; n < NODES; n++) {
+            storage[n] = nodes[n].getDataIds();
+            Arrays.sort(storage[n]);
+        }
+        return storage;
+    }
+}
@@ -0,0 +1,38 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.DataCatalog;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DistanceMatrixTest {
+
+    @Test
+    public void usersNeverRelay() {
+        final OptimizedDataGraph graph = new OptimizedDataGraph(new DataCatalog());
+        final SystemNode near = new SystemNode(10), far = new SystemNode(10);
+        final User relay = new User(), user = new User();
+        graph.addVertex(near);
+        graph.addVertex(far);
+        graph.addVertex(relay);
+        graph.addVertex(user);
+        graph.addEdge(near, far, 10);
+        graph.addEdge(relay, near, 1);
+        graph.addEdge(relay, far, 1);
+        graph.addEdge(user, near, 1);
+
+        final int ordinal = graph.ordinalOf(user);
+        assertEquals(11, graph.getDistances().get(ordinal, graph.ordinalOf(far)), 0);
+        assertEquals(1, graph.getDistances().get(graph.ordinalOf(relay), graph.ordinalOf(far)), 0);
+        // the nearest node search and the landmarks follow the same rule
+        final int[] nodes = new int[2];
+        final double[] distances = new double[2];
+        assertEquals(2, new NearestNodeSearch(graph.freeze()).search(ordinal, 2, Double.POSITIVE_INFINITY,
+                node -> true, nodes, distances));
+        assertEquals(11, distances[1], 0);
+        graph.setApproximation(2, 0.25);
+        assertEquals(11, graph.getDistanceOracle().get(ordinal, graph.ordinalOf(far)), 0);
+    }
+}
@@ -0,0 +1,35 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.DataCatalog;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LandmarkOracleTest {
+
+    @Test
+    public void unusedOrdinalsAreNeverLandmarks() {
+        final OptimizedDataGraph graph = new OptimizedDataGraph(new DataCatalog());
+        final SystemNode[] nodes = new SystemNode[6];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new SystemNode(10);
+            graph.addVertex(nodes[i]);
+            if (i > 0) graph.addEdge(nodes[i - 1], nodes[i], 1);
+        }
+        final User user = new User();
+        graph.addVertex(user);
+        graph.addEdge(user, nodes[5], 1);
+        // the first ordinals are left unused
+        graph.removeVertex(nodes[0]);
+        graph.removeVertex(nodes[1]);
+
+        // without fallback, only landmarks of the remaining path give finite distances
+        graph.setApproximation(2, Double.POSITIVE_INFINITY);
+        final DistanceOracle oracle = graph.getDistanceOracle();
+        for (int i = 2; i < nodes.length; i++) {
+            assertEquals(6 - i, oracle.get(graph.ordinalOf(user), graph.ordinalOf(nodes[i])), 0);
+        }
+    }
+}
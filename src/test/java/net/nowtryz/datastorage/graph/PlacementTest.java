@@ -0,0 +1,135 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.Data;
+import net.nowtryz.datastorage.entity.DataCatalog;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PlacementTest {
+    private static final int NODES = 6;
+    private static final int DATA = 20;
+
+    private final DataCatalog catalog = new DataCatalog();
+    private final OptimizedDataGraph graph = new OptimizedDataGraph(catalog);
+    private final SystemNode[] nodes = new SystemNode[NODES];
+    private final User[] users = new User[12];
+
+    private void build() {
+        final Random random = new Random(7);
+        for (int d = 0; d < DATA; d++) catalog.create(1 + random.nextInt(4));
+        for (int n = 0; n < NODES; n++) {
+            nodes[n] = new SystemNode(12);
+            graph.addVertex(nodes[n]);
+            if (n > 0) graph.addEdge(nodes[n - 1], nodes[n], 1 + random.nextInt(5));
+        }
+        graph.addEdge(nodes[NODES - 1], nodes[0], 3);
+        for (int u = 0; u < users.length; u++) {
+            users[u] = new User(random.ints(3, 0, DATA).distinct().toArray());
+            graph.addVertex(users[u]);
+            graph.addEdge(users[u], nodes[random.nextInt(NODES)], 1 + random.nextInt(3));
+        }
+    }
+
+    @Test
+    public void readersKeepTheirVersionDuringReplacements() throws InterruptedException {
+        this.build();
+        graph.placeData();
+        final Placement held = graph.getPlacement();
+        final int[][] data = this.contentOf(held);
+        final int[][] holders = this.holdersOf(held);
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread reader = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    assertEquals(1, held.getVersion());
+                    for (int n = 0; n < NODES; n++) assertArrayEquals(data[n], held.getData(nodes[n]).toArray());
+                    for (int d = 0; d < DATA; d++) assertArrayEquals(holders[d], this.holderIds(held, d));
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        reader.start();
+        try {
+            for (int round = 0; round < 20; round++) {
+                graph.onInterestChanged(users[round % users.length], round % DATA, (round * 7 + 3) % DATA);
+                graph.onEdgeWeightChanged(nodes[round % NODES], nodes[(round + 1) % NODES], 1 + round % 4);
+            }
+            for (SystemNode node : nodes) node.clear();
+            graph.placeData();
+        } finally {
+            reader.interrupt();
+            reader.join();
+        }
+
+        assertNull(failure.get());
+        assertTrue(graph.getPlacement().getVersion() > held.getVersion());
+    }
+
+    @Test
+    public void incrementalPlacementsMatchAFullCopy() {
+        this.build();
+        graph.placeData();
+        for (int round = 0; round < 10; round++) {
+            final Placement before = graph.getPlacement();
+            final PlacementDelta delta = graph.onInterestChanged(users[round], (round * 3) % DATA);
+            final Placement after = graph.getPlacement();
+
+            final Placement full = Placement.of(graph, after.getVersion());
+            assertArrayEquals(this.contentOf(full), this.contentOf(after));
+            for (int d = 0; d < DATA; d++) assertArrayEquals(this.holderIds(full, d), this.holderIds(after, d));
+            for (int n = 0; n < NODES; n++) {
+                assertEquals(nodes[n].getUsedSpace(), after.getUsedSpace(nodes[n]));
+                // nodes the update didn't touch share their content with the previous placement
+                final SystemNode node = nodes[n];
+                final int ordinal = graph.ordinalOf(node);
+                if (before.hasChanged(ordinal)) assertNotSame(before.dataAt(ordinal), after.dataAt(ordinal));
+                else assertSame(before.dataAt(ordinal), after.dataAt(ordinal));
+                if (delta.getMoves().stream().anyMatch(m -> m.getFrom() == node || m.getTo() == node)) {
+                    assertTrue(before.hasChanged(ordinal));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void nodesChangedOutsideOfAPlacementAreReadAgain() {
+        this.build();
+        graph.placeData();
+        final Data extra = catalog.create(1);
+        nodes[0].addToStorage(extra);
+        assertTrue(graph.onInterestChanged(users[0], users[0].getInterests()).isEmpty());
+
+        assertTrue(graph.getPlacement().getData(nodes[0]).contains(extra.getId()));
+        assertEquals(Arrays.asList(nodes[0]), graph.getPlacement().getHolders(extra.getId()));
+    }
+
+    private int[][] contentOf(Placement placement) {
+        final int[][] content = new int[NODES][];
+        for (int n = 0; n < NODES; n++) content[n] = placement.getData(nodes[n]).toArray();
+        return content;
+    }
+
+    private int[][] holdersOf(Placement placement) {
+        final int[][] holders = new int[DATA][];
+        for (int d = 0; d < DATA; d++) holders[d] = this.holderIds(placement, d);
+        return holders;
+    }
+
+    private int[] holderIds(Placement placement, int data) {
+        return placement.getHolders(data).stream().mapToInt(SystemNode::getId).sorted().toArray();
+    }
+}
@@ -0,0 +1,116 @@
+package net.nowtryz.datastorage.graph;
+
+import net.nowtryz.datastorage.entity.DataCatalog;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReplicaResolverTest {
+    private static final int NODES = 5;
+    private static final int DATA = 15;
+
+    private final DataCatalog catalog = new DataCatalog();
+    private final OptimizedDataGraph graph = new OptimizedDataGraph(catalog);
+    private final SystemNode[] nodes = new SystemNode[NODES];
+    private final User[] users = new User[10];
+
+    @Before
+    public void setUp() {
+        final Random random = new Random(3);
+        for (int d = 0; d < DATA; d++) catalog.create(1 + random.nextInt(3));
+        for (int n = 0; n < NODES; n++) {
+            nodes[n] = new SystemNode(8);
+            graph.addVertex(nodes[n]);
+            if (n > 0) graph.addEdge(nodes[n - 1], nodes[n], 1 + random.nextInt(5));
+        }
+        for (int u = 0; u < users.length; u++) {
+            users[u] = new User(random.ints(3, 0, DATA).distinct().toArray());
+            graph.addVertex(users[u]);
+            graph.addEdge(users[u], nodes[random.nextInt(NODES)], 1 + random.nextInt(3));
+        }
+    }
+
+    @Test
+    public void resolvesNothingBeforeAPlacement() {
+        assertEquals(0, graph.getResolver().getVersion());
+        assertNull(graph.getResolver().resolve(users[0], users[0].getInterests()[0]));
+    }
+
+    @Test
+    public void resolvesTheNearestHolder() {
+        graph.placeData();
+        assertEquals(graph.getPlacement().getVersion(), graph.getResolver().getVersion());
+        this.assertNearest();
+    }
+
+    @Test
+    public void resolvesTheNearestHolderAcrossReplacements() {
+        graph.placeData();
+        assertNotNull(graph.getResolver().resolve(users[0], users[0].getInterests()[0]));
+
+        graph.onEdgeWeightChanged(nodes[1], nodes[2], 20);
+        assertEquals(graph.getPlacement().getVersion(), graph.getResolver().getVersion());
+        this.assertNearest();
+
+        graph.onInterestChanged(users[1], 0, 1, 2);
+        this.assertNearest();
+
+        for (SystemNode node : nodes) node.clear();
+        graph.placeData();
+        assertEquals(graph.getPlacement().getVersion(), graph.getResolver().getVersion());
+        this.assertNearest();
+    }
+
+    @Test
+    public void followsUsersJoiningAndLeaving() {
+        graph.placeData();
+        final User joining = new User(4, 5);
+        assertNull(graph.getResolver().resolve(joining, 4));
+
+        graph.onUserAdded(joining, nodes[NODES - 1], 1);
+        assertNotNull(graph.getResolver().resolve(joining, 4));
+        this.assertNearest();
+
+        graph.onUserRemoved(users[0]);
+        assertNull(graph.getResolver().resolve(users[0], users[0].getInterests()[0]));
+        assertNotNull(graph.getResolver().resolve(joining, 5));
+    }
+
+    @Test
+    public void resolvesWithApproximateDistances() {
+        graph.setApproximation(2, 0);
+        graph.placeData();
+        // with no error allowed, estimates are exact
+        this.assertNearest();
+    }
+
+    private void assertNearest() {
+        final Placement placement = graph.getPlacement();
+        final DistanceMatrix distances = graph.getDistances();
+        for (User user : graph.getUsers()) {
+            final int ordinal = graph.ordinalOf(user);
+            for (int data : user.getInterests()) {
+                double nearest = Double.POSITIVE_INFINITY;
+                for (SystemNode holder : placement.getHolders(data)) {
+                    nearest = Math.min(nearest, distances.get(ordinal, graph.ordinalOf(holder)));
+                }
+
+                final SystemNode resolved = graph.getResolver().resolve(user, data);
+                if (nearest == Double.POSITIVE_INFINITY) {
+                    assertNull(resolved);
+                } else {
+                    assertTrue(placement.getHolders(data).contains(resolved));
+                    assertEquals(nearest, distances.get(ordinal, graph.ordinalOf(resolved)), 0);
+                }
+            }
+        }
+    }
+}
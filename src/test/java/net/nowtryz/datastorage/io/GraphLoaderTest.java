@@ -0,0 +1,89 @@
+package net.nowtryz.datastorage.io;
+
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import net.nowtryz.datastorage.graph.OptimizedDataGraph;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GraphLoaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void idsFollowRecordsNotLines() throws IOException {
+        final GraphLoader loader = this.loader("5 6\n8 6\n");
+        final OptimizedDataGraph graph = loader.load(OptimizedDataGraph::new);
+
+        // ignored lines don't take an id
+        assertEquals(0, loader.getDataId(100));
+        assertEquals(1, loader.getDataId(200));
+        assertEquals(-1, loader.getDataId(300));
+        assertEquals(0, loader.getNode(5).getId());
+        assertEquals(1, loader.getNode(6).getId());
+        assertEquals(20, loader.getNode(6).getCapacity());
+        assertEquals(0, loader.getUser(9).getId());
+        assertEquals(1, loader.getUser(8).getId());
+        assertArrayEquals(new int[]{1, 0}, loader.getUser(9).getInterests());
+        assertNull(loader.getUser(5));
+        assertNull(loader.getNode(8));
+
+        assertEquals(4, graph.vertexSet().size());
+        assertEquals(3, graph.edgeSet().size());
+        final SystemNode node = loader.getNode(5);
+        final User user = loader.getUser(9);
+        assertEquals(2.5, graph.getEdgeWeight(graph.getEdge(user, node)), 0);
+        assertEquals(1, graph.getEdgeWeight(graph.getEdge(node, loader.getNode(6))), 0);
+    }
+
+    @Test
+    public void rejectsLinksBetweenUsers() throws IOException {
+        this.assertRejected("5 6\n8 9\n", "Link between users 8 and 9");
+    }
+
+    @Test
+    public void rejectsNegativeWeights() throws IOException {
+        this.assertRejected("5 6 -1\n", "Invalid weight -1.0");
+    }
+
+    @Test
+    public void rejectsNaNWeights() throws IOException {
+        this.assertRejected("5 6\n8 5 NaN\n", "Invalid weight NaN");
+    }
+
+    private void assertRejected(String edges, String message) throws IOException {
+        final GraphLoader loader = this.loader(edges);
+        try {
+            loader.load(OptimizedDataGraph::new);
+            fail("The links should have been rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+
+    private GraphLoader loader(String edges) throws IOException {
+        return new GraphLoader()
+                .nodes(this.file("nodes.txt", "# id capacity\n\n5 10\n  \n6, 20\n"))
+                .data(this.file("data.txt", "100 3\n# a comment\n200 4\n"))
+                .users(this.file("users.txt", "\n9 200 100\n8\n"))
+                .edges(this.file("edges.txt", "# source target weight\n" + edges + "\n9 5 2.5\n"));
+    }
+
+    private Path file(String name, String content) throws IOException {
+        final Path path = folder.getRoot().toPath().resolve(name);
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+}
@@ -0,0 +1,92 @@
+package net.nowtryz.datastorage.io;
+
+import net.nowtryz.datastorage.entity.DataCatalog;
+import net.nowtryz.datastorage.entity.SystemNode;
+import net.nowtryz.datastorage.entity.User;
+import net.nowtryz.datastorage.graph.OptimizedDataGraph;
+import net.nowtryz.datastorage.graph.Placement;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class PlacementSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void restoresThePlacementAndItsResolution() throws IOException {
+        final OptimizedDataGraph original = this.placedGraph();
+        final Path path = folder.getRoot().toPath().resolve("graph.dsps");
+        PlacementSnapshot.write(original, path);
+
+        final OptimizedDataGraph restored = PlacementSnapshot.open(path).toGraph(OptimizedDataGraph::new);
+        final Placement placement = restored.getPlacement();
+        assertEquals(1, placement.getVersion());
+        assertEquals(placement.getVersion(), restored.getResolver().getVersion());
+
+        assertEquals(original.getPlacement().getNodes().size(), placement.getNodes().size());
+        for (SystemNode node : placement.getNodes()) {
+            final SystemNode before = this.nodeById(original, node.getId());
+            assertArrayEquals(original.getPlacement().getData(before).toArray(), placement.getData(node).toArray());
+            assertEquals(original.getPlacement().getUsedSpace(before), placement.getUsedSpace(node));
+        }
+
+        for (User user : restored.getUsers()) {
+            final User before = this.userById(original, user.getId());
+            assertArrayEquals(before.getInterests(), user.getInterests());
+            for (int data : user.getInterests()) {
+                final SystemNode expected = original.getResolver().resolve(before, data);
+                final SystemNode resolved = restored.getResolver().resolve(user, data);
+                if (expected == null) {
+                    assertNull(resolved);
+                    continue;
+                }
+                // nodes at the same distance may be numbered differently once restored, compare distances
+                assertNotNull(resolved);
+                assertEquals(original.getDistances().get(original.ordinalOf(before), original.ordinalOf(expected)),
+                        restored.getDistances().get(restored.ordinalOf(user), restored.ordinalOf(resolved)), 0);
+            }
+        }
+    }
+
+    private OptimizedDataGraph placedGraph() {
+        final Random random = new Random(11);
+        final DataCatalog catalog = new DataCatalog();
+        final OptimizedDataGraph graph = new OptimizedDataGraph(catalog);
+        for (int d = 0; d < 12; d++) catalog.create(1 + random.nextInt(3));
+
+        final SystemNode[] nodes = new SystemNode[4];
+        for (int n = 0; n < nodes.length; n++) {
+            nodes[n] = new SystemNode(6);
+            graph.addVertex(nodes[n]);
+            if (n > 0) graph.addEdge(nodes[n - 1], nodes[n], 1 + random.nextInt(4));
+        }
+        for (int u = 0; u < 8; u++) {
+            final User user = new User(random.ints(3, 0, 12).distinct().toArray());
+            graph.addVertex(user);
+            graph.addEdge(user, nodes[random.nextInt(nodes.length)], 1 + random.nextInt(3));
+        }
+        graph.placeData();
+        return graph;
+    }
+
+    private SystemNode nodeById(OptimizedDataGraph graph, int id) {
+        return graph.getPlacement().getNodes().stream().filter(node -> node.getId() == id).findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+    private User userById(OptimizedDataGraph graph, int id) {
+        return Arrays.stream(graph.getUsers()).filter(user -> user.getId() == id).findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+}
@@ -0,0 +1,97 @@
+package net.nowtryz.datastorage.knapsack;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class KnapsackSolverTest {
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void solversFindTheOptimumOfRandomInstances() {
+        final Random random = new Random(42);
+        final KnapsackSolver dynamicProgramming = new DynamicProgrammingKnapsack();
+        final KnapsackSolver branchAndBound = new BranchAndBoundKnapsack();
+
+        for (int instance = 0; instance < 500; instance++) {
+            final int n = random.nextInt(13);
+            final int[] weights = new int[n];
+            final double[] values = new double[n];
+            for (int i = 0; i < n; i++) {
+                weights[i] = 1 + random.nextInt(30);
+                // a few worthless items, which must never be needed
+                values[i] = random.nextInt(10) == 0 ? 0 : random.nextDouble() * 100;
+            }
+            final int capacity = random.nextInt(120);
+
+            final double optimum = bruteForce(weights, values, capacity);
+            assertSolution("dynamic programming", dynamicProgramming, weights, values, capacity, optimum);
+            assertSolution("branch and bound", branchAndBound, weights, values, capacity, optimum);
+        }
+    }
+
+    @Test
+    public void emptyKnapsackSelectsNothing() {
+        final int[] weights = {1, 2, 3};
+        final double[] values = {5, 6, 7};
+        assertTrue(new DynamicProgrammingKnapsack().solve(weights, values, 0).isEmpty());
+        assertTrue(new BranchAndBoundKnapsack().solve(weights, values, 0).isEmpty());
+    }
+
+    @Test
+    public void infiniteValuesComeFirstAndNaNNever() {
+        // users linked with a weight of 0 give infinite scores
+        final int[] weights = {3, 2, 4, 1, 5, 1};
+        final double[] values = {Double.POSITIVE_INFINITY, 10, Double.POSITIVE_INFINITY, 3, Double.POSITIVE_INFINITY,
+                Double.NaN};
+        final BitSet expected = new BitSet();
+        expected.set(0, 4);
+        assertEquals(expected, new DynamicProgrammingKnapsack().solve(weights, values, 10));
+        assertEquals(expected, new BranchAndBoundKnapsack().solve(weights, values, 10));
+        assertEquals(expected, new AdaptiveKnapsack(0).solve(weights, values, 10));
+    }
+
+    @Test
+    public void adaptiveSolverBoundsTheTableAndTheRow() {
+        final AdaptiveKnapsack solver = new AdaptiveKnapsack(1000, 100);
+        assertSame(DynamicProgrammingKnapsack.class, solver.select(10, 99).getClass());
+        // too many cells
+        assertSame(BranchAndBoundKnapsack.class, solver.select(20, 99).getClass());
+        // a single item, but a row of best values too long
+        assertSame(BranchAndBoundKnapsack.class, solver.select(1, 500).getClass());
+        assertSame(BranchAndBoundKnapsack.class, new AdaptiveKnapsack().select(1, 60_000_000).getClass());
+    }
+
+    private static void assertSolution(String name, KnapsackSolver solver, int[] weights, double[] values,
+                                       int capacity, double optimum) {
+        final BitSet selected = solver.solve(weights, values, capacity);
+        long weight = 0;
+        double value = 0;
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            weight += weights[i];
+            value += values[i];
+        }
+        assertTrue(name + " overfills the knapsack", weight <= capacity);
+        assertEquals(name + " misses the optimum", optimum, value, EPSILON);
+    }
+
+    private static double bruteForce(int[] weights, double[] values, int capacity) {
+        double best = 0;
+        for (int mask = 0; mask < 1 << weights.length; mask++) {
+            long weight = 0;
+            double value = 0;
+            for (int i = 0; i < weights.length; i++) {
+                if ((mask & 1 << i) == 0) continue;
+                weight += weights[i];
+                value += values[i];
+            }
+            if (weight <= capacity) best = Math.max(best, value);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,103 @@
+package net.nowtryz.datastorage.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IntIntHashMapTest {
+    private static final int ABSENT = -7;
+
+    @Test
+    public void behavesLikeAHashMap() {
+        final Random random = new Random(2);
+        final IntIntHashMap map = new IntIntHashMap();
+        final Map<Integer, Integer> expected = new HashMap<>();
+
+        for (int step = 0; step < 200_000; step++) {
+            // few keys so removals shift back entries of long clusters
+            final int key = random.nextInt(3000) - 100;
+            switch (random.nextInt(3)) {
+                case 0:
+                    int value = random.nextInt();
+                    assertEquals(expected.getOrDefault(key, ABSENT).intValue(), map.put(key, value, ABSENT));
+                    expected.put(key, value);
+                    break;
+                case 1:
+                    Integer removed = expected.remove(key);
+                    assertEquals(removed == null ? ABSENT : removed, map.remove(key, ABSENT));
+                    break;
+                default:
+                    assertEquals(expected.containsKey(key), map.containsKey(key));
+                    assertEquals(expected.getOrDefault(key, ABSENT).intValue(), map.get(key, ABSENT));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertKeys(expected, map.keys());
+    }
+
+    @Test
+    public void keysReflectChanges() {
+        final IntIntHashMap map = new IntIntHashMap(2);
+        final IntSet keys = map.keys();
+        assertTrue(keys.isEmpty());
+        for (int key = 0; key < 100; key++) map.put(key, key, ABSENT);
+        assertEquals(100, keys.size());
+        assertTrue(keys.contains(42));
+
+        map.clear();
+        assertTrue(keys.isEmpty());
+        assertFalse(keys.contains(42));
+        assertEquals(0, keys.toArray().length);
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        final IntIntHashMap map = new IntIntHashMap();
+        for (int key = 0; key < 50; key++) map.put(key, -key, ABSENT);
+        final IntIntHashMap copy = new IntIntHashMap(map);
+        map.remove(7, ABSENT);
+        copy.put(100, 1, ABSENT);
+
+        assertEquals(-7, copy.get(7, ABSENT));
+        assertFalse(map.containsKey(100));
+        assertEquals(49, map.size());
+        assertEquals(51, copy.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTheFreeMarker() {
+        new IntIntHashMap().put(Integer.MIN_VALUE, 0, ABSENT);
+    }
+
+    @Test
+    public void theFreeMarkerIsNeverFound() {
+        final IntIntHashMap map = new IntIntHashMap();
+        map.put(1, 2, ABSENT);
+        assertFalse(map.containsKey(Integer.MIN_VALUE));
+        assertFalse(map.keys().contains(Integer.MIN_VALUE));
+        assertEquals(ABSENT, map.get(Integer.MIN_VALUE, ABSENT));
+        assertEquals(ABSENT, map.remove(Integer.MIN_VALUE, ABSENT));
+        assertEquals(1, map.size());
+        assertEquals(2, map.get(1, ABSENT));
+    }
+
+    private static void assertKeys(Map<Integer, Integer> expected, IntSet keys) {
+        final int[] sorted = keys.stream().sorted().toArray();
+        final int[] wanted = expected.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        assertArrayEquals(wanted, sorted);
+
+        final int[] visited = {0};
+        keys.forEach(key -> {
+            assertTrue(expected.containsKey(key));
+            visited[0]++;
+        });
+        assertEquals(expected.size(), visited[0]);
+    }
+}